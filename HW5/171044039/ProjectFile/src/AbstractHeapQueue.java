@@ -0,0 +1,345 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Represents the Priority Queue with array based heap, whose nodes have
+ * arity children each. Keeps the array, the size and the comparisons, and
+ * implements the operations of the Q over two sifts, which the subclasses
+ * define for their heap: binary (PriorityQueue) or d-ary (DaryPriorityQueue).
+ * Node i is at index offset+i of the array, the root is node 0 and the
+ * parent of node i is node (i-1)/arity.
+ * Many elements are added at once by building the heap bottom up (Floyd),
+ * which takes linear time. Iterators and spliterators go over the array in
+ * heap order and are fail-fast.
+ * @see PriorityQueue
+ * @see DaryPriorityQueue
+ * @author Ahmed Semih Özmekik
+ */
+public abstract class AbstractHeapQueue<E> extends AbstractQueue<E>
+        implements Queue<E>
+{
+    protected final int arity; // number of children of a node.
+    protected final int offset; // index of the root in the array.
+    private final Comparator<E> comparator; // generic comparisons, null for natural ordering.
+    protected E[] theData; // underlying heap array.
+    private int capacity = 10; // initial capacity.
+    protected int size = 0;
+    private int modCount = 0; // number of modifications, for fail-fast iteration.
+
+    /**
+     * Returns the empty Q.
+     * @param arity is the number of children of a node, at least 2.
+     * @param offset is the index of the root in the array.
+     * @param comparator is the comparison scheme, null for natural ordering.
+     */
+    @SuppressWarnings("unchecked")
+    protected AbstractHeapQueue(int arity, int offset, Comparator<E> comparator)
+    {
+        if (arity < 2)
+            throw new IllegalArgumentException("Arity must be at least 2!");
+        this.arity = arity;
+        this.offset = offset;
+        this.comparator = comparator;
+        theData = (E[]) new Object[offset+capacity];
+    }
+
+    /**
+     * Adds the elements to the empty Q and builds the heap in linear time.
+     * They are copied to the Object[] of the Q, since the array of the caller
+     * may be of a subtype of E.
+     * @param elements are the elements, the array is not modified.
+     */
+    protected void heapifyAll(E[] elements)
+    {
+        if (elements.length > capacity){
+            capacity = elements.length;
+            theData = Arrays.copyOf(theData, offset+capacity);
+        }
+        System.arraycopy(elements, 0, theData, offset, elements.length);
+        size = elements.length;
+        heapify();
+    }
+
+    public int arity()
+    {
+        return arity;
+    }
+
+    /**
+     * Returns the size of the queue.
+     * @return the size.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a new element.
+     * @param e new element to be added.
+     */
+    @Override
+    public boolean offer(E e) {
+        if (size+1>capacity) // capacity is reached
+            expand(size+1);
+
+        siftUp(size++, e);
+        ++modCount;
+        return true;
+    }
+
+    /**
+     * Adds all elements of the collection. If the collection is not smaller
+     * than the Q, the heap is built again at once instead of sifting each one.
+     * @param c is the collection of new elements.
+     * @return true if the Q is changed.
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        if (c == this)
+            throw new IllegalArgumentException("Queue can not be added to itself!");
+        int added = c.size();
+        if (added == 0)
+            return false;
+        if (size+added>capacity)
+            expand(size+added);
+
+        if (added >= size){
+            for (E e : c)
+                theData[offset + size++] = e;
+            heapify();
+        }
+        else {
+            for (E e : c)
+                siftUp(size++, e);
+        }
+        ++modCount;
+        return true;
+    }
+
+    /**
+     * Gets the maximum item of the Q and removes it.
+     * @return the max item of the Q.
+     */
+    @Override
+    public E poll() {
+        if (isEmpty())
+            return null;
+
+        // Save the top.
+        E result = theData[offset];
+
+        // Remove the last item from the array and sift it down from the root.
+        E last = theData[offset + --size];
+        theData[offset + size] = null;
+        if (size > 0)
+            siftDown(0, last);
+        ++modCount;
+        return result;
+    }
+
+    /**
+     * Removes up to n of the max items, in order, and gives them to the sink.
+     * @param n is the largest number of items to remove.
+     * @param sink takes the removed items.
+     * @return the number of items removed.
+     */
+    public int pollBatch(int n, Consumer<? super E> sink) {
+        int count = 0;
+        while (count < n && !isEmpty()){
+            sink.accept(poll());
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Removes all items, in order, and adds them to the collection.
+     * @param c is the collection.
+     * @return the number of items removed.
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes up to maxElements of the max items, in order, and adds them to the collection.
+     * @param c is the collection.
+     * @param maxElements is the largest number of items to remove.
+     * @return the number of items removed.
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this)
+            throw new IllegalArgumentException("Queue can not be drained to itself!");
+        return pollBatch(maxElements, c::add);
+    }
+
+    /**
+     * Gets the max element of the Q.
+     * @return the max element of the Q.
+     */
+    @Override
+    public E peek() {
+        return theData[offset];
+    }
+
+    /**
+     * Returns the iterator over the elements in heap order, not in priority
+     * order. Iterator is fail-fast: it throws ConcurrentModificationException
+     * if the Q is modified after it is created. Removal is not supported.
+     * @return the iterator.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new HeapIterator();
+    }
+
+    /**
+     * Returns the spliterator over the elements in heap order, which can be
+     * split for parallel streams. It is late-binding and fail-fast.
+     * @return the spliterator.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new HeapSpliterator(0, -1, 0);
+    }
+
+    /**
+     * Places the element to the hole at node child, moving smaller parents down.
+     * @param child is the node of the hole.
+     * @param e is the element.
+     */
+    protected abstract void siftUp(int child, E e);
+
+    /**
+     * Places the element to the hole at node parent, moving larger children up.
+     * @param parent is the node of the hole.
+     * @param e is the element.
+     */
+    protected abstract void siftDown(int parent, E e);
+
+    /**
+     * Builds the heap of the array bottom up: each parent, from the last
+     * one to the root, is sifted down over its already built subtrees.
+     */
+    private void heapify()
+    {
+        for (int parent=(size-2)/arity;parent>=0 && size>1;--parent)
+            siftDown(parent, theData[offset + parent]);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected int compare(E e1, E e2)
+    {
+        if(comparator != null) // comparator is defined.
+            return comparator.compare(e1, e2);
+        else
+            return ((Comparable<E>) e1).compareTo(e2);
+    }
+
+    /**
+     * Expand the capacity of array as double, or more if needed, and maintain the array.
+     * @param minCapacity is the least capacity needed.
+     */
+    private void expand(int minCapacity)
+    {
+        capacity = Math.max(capacity*2, minCapacity);
+        theData = Arrays.copyOf(theData, offset+capacity);
+    }
+
+    /**
+     * Represents the iterator over the heap array.
+     */
+    private class HeapIterator implements Iterator<E>
+    {
+        private int cursor = 0;
+        private final int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (cursor >= size)
+                throw new NoSuchElementException();
+            return theData[offset + cursor++];
+        }
+    }
+
+    /**
+     * Represents the spliterator over a range of the heap array. The range is
+     * bound to the size of the Q on first use, and halved by trySplit.
+     */
+    private class HeapSpliterator implements Spliterator<E>
+    {
+        private int index; // next element.
+        private int fence; // end of the range, -1 until first use.
+        private int expectedModCount;
+
+        private HeapSpliterator(int origin, int fence, int expectedModCount)
+        {
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence()
+        {
+            if (fence < 0){
+                expectedModCount = modCount;
+                fence = size;
+            }
+            return fence;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int high = getFence(), low = index, middle = (low + high) >>> 1;
+            if (low >= middle)
+                return null;
+            index = middle;
+            return new HeapSpliterator(low, middle, expectedModCount);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null)
+                throw new NullPointerException();
+            int high = getFence();
+            if (index >= high)
+                return false;
+            E e = theData[offset + index++];
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            action.accept(e);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (action == null)
+                throw new NullPointerException();
+            int high = getFence();
+            E[] data = theData;
+            for (int i=index;i<high;++i)
+                action.accept(data[offset + i]);
+            index = high;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public long estimateSize() {
+            return getFence() - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Represents the sink which writes the pixels on its own thread. Each channel
+ * encodes its pixels into a buffer; full buffers are passed to the writer
+ * thread, and the channel goes on with an empty buffer. Buffers are reused,
+ * so that writing a pixel does not allocate. If the writer is behind, channels
+ * wait for a free buffer. Each channel keeps a buffer, so a buffer is added
+ * for each channel opened; any number of channels can be open at once.
+ * Subclasses decide how a pixel is encoded.
+ * @see TextPixelSink
+ * @see BinaryPixelSink
+ * @author Ahmed Semih Özmekik
+ */
+public abstract class AsyncPixelSink implements PixelSink
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BUFFER_NUMBER = 16; // buffers which are not kept by a channel.
+    private static final Buffer END = new Buffer(0); // stops the writer.
+
+    private final OutputStream out;
+    private final boolean closeStream;
+    private final BlockingQueue<Buffer> full = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Buffer> free = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile IOException failure = null;
+    private int channelNumber = 0;
+
+    /**
+     * Creates the sink and starts its writer thread.
+     * @param out is the stream the pixels are written to.
+     * @param closeStream whether the stream is closed with the sink, false for System.out.
+     */
+    protected AsyncPixelSink(OutputStream out, boolean closeStream)
+    {
+        this.out = out;
+        this.closeStream = closeStream;
+        for (int i=0;i<BUFFER_NUMBER;++i)
+            free.add(new Buffer(BUFFER_SIZE));
+
+        writer = new Thread(this::writeBuffers, "PixelSinkWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Encodes the pixel into the buffer.
+     * @param buffer is the buffer, which has at least maxRecordSize() bytes left.
+     * @param position is the first free index of the buffer.
+     * @param channelId is the index of the channel, in order of opening.
+     * @param threadName is the name of the channel as bytes.
+     * @param rgb is the RGB value of the pixel.
+     * @return the new position.
+     */
+    protected abstract int encode(byte[] buffer, int position, int channelId, byte[] threadName, int rgb);
+
+    /**
+     * Returns the largest number of bytes a pixel is encoded to.
+     * @param threadName is the name of the channel as bytes.
+     * @return the largest record size.
+     */
+    protected abstract int maxRecordSize(byte[] threadName);
+
+    /**
+     * Returns the largest number of channels the encoding can tell apart.
+     * @return the largest number of channels, unlimited by default.
+     */
+    protected int maxChannels()
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Opens the channel of a thread, channels are indexed in order of opening.
+     * @throws IllegalStateException if maxChannels() channels are already opened.
+     */
+    @Override
+    public synchronized Channel open(String threadName)
+    {
+        if (channelNumber == maxChannels())
+            throw new IllegalStateException("Sink can not have more than " + maxChannels() + " channels!");
+        free.add(new Buffer(BUFFER_SIZE)); // the buffer kept by the new channel.
+        return new BufferedChannel(channelNumber++, threadName.getBytes());
+    }
+
+    /**
+     * Waits for the writer to write all buffers, then flushes the stream.
+     * @throws UncheckedIOException if the stream failed.
+     */
+    @Override
+    public void close()
+    {
+        try {
+            full.put(END);
+            writer.join();
+            if (closeStream)
+                out.close();
+            else
+                out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e;
+        }
+        if (failure != null)
+            throw new UncheckedIOException(failure);
+    }
+
+    /* Run() method of the writer thread. After a failure, buffers are only recycled. */
+    private void writeBuffers()
+    {
+        try {
+            while (true){
+                Buffer buffer = full.take();
+                if (buffer == END)
+                    return;
+                if (failure == null){
+                    try {
+                        out.write(buffer.bytes, 0, buffer.length);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                buffer.length = 0;
+                free.put(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Buffer exchange(Buffer buffer)
+    {
+        try {
+            if (buffer != null && buffer.length > 0)
+                full.put(buffer);
+            else if (buffer != null)
+                free.put(buffer);
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing pixels!", e);
+        }
+    }
+
+    private static class Buffer
+    {
+        private final byte[] bytes;
+        private int length = 0;
+
+        private Buffer(int size)
+        {
+            bytes = new byte[size];
+        }
+    }
+
+    /**
+     * Represents the channel of one thread with its own buffer.
+     */
+    private class BufferedChannel implements Channel
+    {
+        private final int id;
+        private final byte[] threadName;
+        private final int maxRecord;
+        private Buffer buffer;
+
+        private BufferedChannel(int id, byte[] threadName)
+        {
+            this.id = id;
+            this.threadName = threadName;
+            maxRecord = maxRecordSize(threadName);
+            if (maxRecord > BUFFER_SIZE)
+                throw new IllegalArgumentException("Thread name is too long!");
+        }
+
+        @Override
+        public void write(int rgb)
+        {
+            if (buffer == null || buffer.length + maxRecord > BUFFER_SIZE)
+                buffer = exchange(buffer);
+            buffer.length = encode(buffer.bytes, buffer.length, id, threadName, rgb);
+        }
+
+        @Override
+        public void close()
+        {
+            if (buffer == null)
+                return;
+            try {
+                if (buffer.length > 0)
+                    full.put(buffer);
+                else
+                    free.put(buffer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            buffer = null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Represents the sink which writes each pixel as a 4 byte big endian record:
+ * the channel index in the high byte, then the 24 bit RGB value, so at
+ * most 256 channels can be opened.
+ * Channels are indexed in order of opening; in PixelPriority, 0 is the
+ * producer and consumer k (from 0) of the LEX, EUC and BMX queues is
+ * 3k+1, 3k+2 and 3k+3, so there can be at most 85 consumers of each.
+ * @author Ahmed Semih Özmekik
+ */
+public class BinaryPixelSink extends AsyncPixelSink
+{
+    /**
+     * Creates the sink writing to the file.
+     * @param file is the path of the file.
+     * @throws FileNotFoundException
+     */
+    public BinaryPixelSink(String file) throws FileNotFoundException
+    {
+        this(new BufferedOutputStream(new FileOutputStream(file)), true);
+    }
+
+    /**
+     * Creates the sink writing to the stream.
+     * @param out is the stream.
+     * @param closeStream whether the stream is closed with the sink.
+     */
+    public BinaryPixelSink(OutputStream out, boolean closeStream)
+    {
+        super(out, closeStream);
+    }
+
+    @Override
+    protected int maxRecordSize(byte[] threadName)
+    {
+        return 4;
+    }
+
+    @Override
+    protected int maxChannels()
+    {
+        return 256;
+    }
+
+    @Override
+    protected int encode(byte[] buffer, int position, int channelId, byte[] threadName, int rgb)
+    {
+        buffer[position++] = (byte) channelId;
+        buffer[position++] = (byte) (rgb >> 16);
+        buffer[position++] = (byte) (rgb >> 8);
+        buffer[position++] = (byte) rgb;
+        return position;
+    }
+}
@@ -0,0 +1,154 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Represents the blocking max priority queue shared by producers and
+ * consumers. Wraps a LongQueue, which is accessed under one lock only for
+ * the time of an offer or a poll, so that producers and consumers overlap.
+ * Consumers wait on a condition while the queue is empty.
+ * Order is strict: take always returns the largest element.
+ * @see ConcurrentLongQueue
+ * @see LongQueue
+ * @author Ahmed Semih Özmekik
+ */
+public class BlockingLongQueue implements ConcurrentLongQueue
+{
+    private final LongQueue queue;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean closed = false;
+
+    /**
+     * Returns the blocking Q over the given Q, which must not be used directly after.
+     * @param queue is the underlying Q.
+     */
+    public BlockingLongQueue(LongQueue queue)
+    {
+        this.queue = queue;
+    }
+
+    /**
+     * Adds a new element and wakes up a waiting consumer.
+     * @param e new element to be added.
+     * @throws IllegalStateException if the Q is closed.
+     */
+    @Override
+    public void put(long e)
+    {
+        if (e == CLOSED || e == EMPTY)
+            throw new IllegalArgumentException("Reserved value can not be put!");
+
+        lock.lock();
+        try {
+            if (closed)
+                throw new IllegalStateException("Queue is closed!");
+            queue.offer(e);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the maximum item of the Q and removes it, waits while the Q is empty.
+     * @return the max item of the Q, CLOSED if the Q is closed and empty.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @Override
+    public long take() throws InterruptedException
+    {
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty() && !closed)
+                notEmpty.await();
+            return queue.isEmpty() ? CLOSED : queue.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the maximum item of the Q and removes it, waits up to the given time
+     * while the Q is empty.
+     * @param timeout is the longest time to wait.
+     * @param unit is the unit of the timeout.
+     * @return the max item of the Q, CLOSED if the Q is closed and empty,
+     *         EMPTY if the time is out.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @Override
+    public long poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty() && !closed){
+                if (nanos <= 0)
+                    return EMPTY;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return queue.isEmpty() ? CLOSED : queue.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes up to maxElements of the largest items, without waiting.
+     * @param dest is the array the items are written to, largest first.
+     * @param maxElements is the largest number of items to remove.
+     * @return the number of items removed.
+     */
+    @Override
+    public int drainTo(long[] dest, int maxElements)
+    {
+        int count = Math.min(maxElements, dest.length);
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < count && !queue.isEmpty())
+                dest[n++] = queue.poll();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the end of the production, wakes up all waiting consumers.
+     */
+    @Override
+    public void close()
+    {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Represents the max Priority Queue for keys in a small fixed range, such as
+ * 24 bit colors. There is one bucket per key, and a hierarchy of bitmaps
+ * marks the non empty buckets: a bit of a level is set if the word below it
+ * has any bit set. The largest key is found by going down from the top word,
+ * one word per level, so offer and poll take a few steps (4 for 2^24 keys)
+ * for any number of elements and in any order of keys.
+ * Elements with the same key are returned last in, first out; their payloads
+ * are not compared. Elements are kept in arrays, no object is created per
+ * element.
+ * @see LongPriorityQueue
+ * @author Ahmed Semih Özmekik
+ */
+public class BucketPriorityQueue implements LongQueue
+{
+    private final int maxKey;
+    private final int[] head; // first node of each bucket, 0 for empty.
+    private final long[][] levels; // levels[0] has a bit per bucket, last level is one word.
+
+    /* Nodes of the buckets, node 0 is not used. */
+    private int[] next;
+    private int[] payload;
+    private int freeNode = 0; // first node of the free list, 0 for none.
+    private int usedNodes = 0;
+    private int size = 0;
+
+    /**
+     * Returns the Q for keys from 0 to maxKey.
+     * @param maxKey is the largest key.
+     */
+    public BucketPriorityQueue(int maxKey)
+    {
+        this(maxKey, 10);
+    }
+
+    /**
+     * Returns the Q for keys from 0 to maxKey with given initial capacity.
+     * @param maxKey is the largest key.
+     * @param capacity is the initial capacity.
+     */
+    public BucketPriorityQueue(int maxKey, int capacity)
+    {
+        if (maxKey < 0 || maxKey == Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Key range is invalid!");
+        this.maxKey = maxKey;
+        head = new int[maxKey+1];
+
+        int levelNumber = 1;
+        for (long bits=maxKey+1L;bits>64;bits=(bits+63)/64)
+            ++levelNumber;
+        levels = new long[levelNumber][];
+        long bits = maxKey+1L;
+        for (int l=0;l<levelNumber;++l){
+            bits = (bits+63)/64;
+            levels[l] = new long[(int) bits];
+        }
+
+        next = new int[Math.max(2, capacity+1)];
+        payload = new int[next.length];
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Adds a new element.
+     * @param e new element to be added, its key must be from 0 to maxKey.
+     */
+    @Override
+    public void offer(long e)
+    {
+        int key = LongPriorityQueue.keyOf(e);
+        if (key < 0 || key > maxKey)
+            throw new IllegalArgumentException("Key out of range: " + key);
+
+        int node = newNode();
+        payload[node] = LongPriorityQueue.payloadOf(e);
+        next[node] = head[key];
+        if (head[key] == 0)
+            markBucket(key);
+        head[key] = node;
+        ++size;
+    }
+
+    /**
+     * Gets the maximum item of the Q and removes it.
+     * @return the max item of the Q.
+     * @throws NoSuchElementException if the Q is empty.
+     */
+    @Override
+    public long poll()
+    {
+        int key = maxKey();
+        int node = head[key];
+        head[key] = next[node];
+        if (head[key] == 0)
+            unmarkBucket(key);
+
+        next[node] = freeNode;
+        freeNode = node;
+        --size;
+        return LongPriorityQueue.pack(key, payload[node]);
+    }
+
+    /**
+     * Gets the max element of the Q.
+     * @return the max element of the Q.
+     * @throws NoSuchElementException if the Q is empty.
+     */
+    @Override
+    public long peek()
+    {
+        int key = maxKey();
+        return LongPriorityQueue.pack(key, payload[head[key]]);
+    }
+
+    /* Goes down the levels following the highest set bit. */
+    private int maxKey()
+    {
+        if (isEmpty())
+            throw new NoSuchElementException("Queue is empty!");
+
+        int index = 0;
+        for (int l=levels.length-1;l>=0;--l)
+            index = index*64 + 63 - Long.numberOfLeadingZeros(levels[l][index]);
+        return index;
+    }
+
+    /* Sets the bits of the bucket, up to the level where the bit is already set. */
+    private void markBucket(int key)
+    {
+        int index = key;
+        for (int l=0;l<levels.length;++l){
+            long word = levels[l][index/64];
+            levels[l][index/64] = word | (1L << (index%64));
+            if (word != 0)
+                break;
+            index /= 64;
+        }
+    }
+
+    /* Clears the bits of the bucket, up to the level where the word is still not empty. */
+    private void unmarkBucket(int key)
+    {
+        int index = key;
+        for (int l=0;l<levels.length;++l){
+            long word = levels[l][index/64] & ~(1L << (index%64));
+            levels[l][index/64] = word;
+            if (word != 0)
+                break;
+            index /= 64;
+        }
+    }
+
+    /* Takes a node from the free list or from the unused part of the arrays. */
+    private int newNode()
+    {
+        if (freeNode != 0){
+            int node = freeNode;
+            freeNode = next[node];
+            return node;
+        }
+        if (usedNodes+1 == next.length){ // capacity is reached
+            next = Arrays.copyOf(next, 2*next.length);
+            payload = Arrays.copyOf(payload, next.length);
+        }
+        return ++usedNodes;
+    }
+}
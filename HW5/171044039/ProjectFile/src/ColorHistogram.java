@@ -0,0 +1,147 @@
+import java.util.Arrays;
+
+/**
+ * Represents the histogram of colors, a map from RGB value to the number of
+ * pixels with that value. Keys are primitive ints, kept in an open addressing
+ * hash table with linear probing, so no object is created per color.
+ * Distinct colors are entries, numbered from 0 in order of first occurrence:
+ * the table keeps the entry of each slot, and the entries keep the colors and
+ * the counts in dense arrays.
+ * @see PixelPriority
+ * @author Ahmed Semih Özmekik
+ */
+public class ColorHistogram
+{
+    private int[] slots; // entry+1 of each slot, 0 for empty.
+    private int shift; // 32 - log2 of the number of slots.
+    private int[] colors; // color of each entry.
+    private int[] counts; // count of each entry.
+    private int size = 0;
+
+    public ColorHistogram()
+    {
+        this(16);
+    }
+
+    /**
+     * Returns the empty histogram, which expands only after the given number of colors.
+     * @param expectedColors is the expected number of distinct colors.
+     */
+    public ColorHistogram(int expectedColors)
+    {
+        int slotNumber = Integer.highestOneBit(Math.max(8, expectedColors-1)) * 4; // at most half full.
+        slots = new int[slotNumber];
+        shift = 32 - Integer.numberOfTrailingZeros(slotNumber);
+        colors = new int[slotNumber/2];
+        counts = new int[slotNumber/2];
+    }
+
+    /**
+     * Returns the histogram of the pixels.
+     * @param rgb is the RGB values of the pixels.
+     * @return the histogram.
+     */
+    public static ColorHistogram of(int[] rgb)
+    {
+        ColorHistogram histogram = new ColorHistogram();
+        for (int color : rgb)
+            histogram.add(color, 1);
+        return histogram;
+    }
+
+    /**
+     * Adds pixels of a color.
+     * @param color is the RGB value.
+     * @param count is the number of pixels, at least 1.
+     */
+    public void add(int color, int count)
+    {
+        if (count < 1)
+            throw new IllegalArgumentException("Count must be at least 1!");
+
+        int slot = slotOf(color);
+        if (slots[slot] != 0){
+            counts[slots[slot]-1] += count;
+            return;
+        }
+        if (size == colors.length){ // table is half full
+            expand();
+            slot = slotOf(color);
+        }
+        colors[size] = color;
+        counts[size] = count;
+        slots[slot] = ++size;
+    }
+
+    /**
+     * Returns the number of pixels of a color.
+     * @param color is the RGB value.
+     * @return the count, 0 if there is no such pixel.
+     */
+    public int get(int color)
+    {
+        int entry = slots[slotOf(color)];
+        return entry == 0 ? 0 : counts[entry-1];
+    }
+
+    /**
+     * Returns the number of distinct colors.
+     * @return the number of entries.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the color of an entry.
+     * @param entry is from 0 to size-1, in order of first occurrence.
+     * @return the RGB value.
+     */
+    public int color(int entry)
+    {
+        return colors[entry];
+    }
+
+    /**
+     * Returns the count of an entry.
+     * @param entry is from 0 to size-1, in order of first occurrence.
+     * @return the number of pixels.
+     */
+    public int count(int entry)
+    {
+        return counts[entry];
+    }
+
+    /**
+     * Returns the distinct colors in order of first occurrence.
+     * @return a new array of the colors.
+     */
+    public int[] colors()
+    {
+        return Arrays.copyOf(colors, size);
+    }
+
+    /* Slot of the color, or the empty slot where it would be placed. */
+    private int slotOf(int color)
+    {
+        int mask = slots.length - 1;
+        int slot = (color * 0x9e3779b9) >>> shift; // Fibonacci hashing.
+        while (slots[slot] != 0 && colors[slots[slot]-1] != color)
+            slot = (slot+1) & mask;
+        return slot;
+    }
+
+    /**
+     * Doubles the table and the entries, and places the entries again.
+     */
+    private void expand()
+    {
+        slots = new int[2*slots.length];
+        --shift;
+        colors = Arrays.copyOf(colors, 2*colors.length);
+        counts = Arrays.copyOf(counts, 2*counts.length);
+        for (int entry=0;entry<size;++entry)
+            slots[slotOf(colors[entry])] = entry+1;
+    }
+}
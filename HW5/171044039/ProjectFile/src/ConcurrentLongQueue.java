@@ -0,0 +1,60 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the max priority queue of packed longs shared by producers and
+ * consumers. Producers close the queue when they finish. After close,
+ * consumers take the remaining elements, then get CLOSED instead of waiting.
+ * CLOSED and EMPTY are reserved values, they can not be put to the queue.
+ * @see BlockingLongQueue
+ * @see MultiLongQueue
+ * @author Ahmed Semih Özmekik
+ */
+public interface ConcurrentLongQueue
+{
+    /** Returned by take and poll when the queue is closed and empty. */
+    long CLOSED = Long.MIN_VALUE;
+    /** Returned by poll when the time is out. */
+    long EMPTY = Long.MIN_VALUE + 1;
+
+    /**
+     * Adds a new element and wakes up a waiting consumer.
+     * @param e new element to be added.
+     * @throws IllegalStateException if the Q is closed.
+     */
+    void put(long e);
+
+    /**
+     * Gets the maximum item of the Q and removes it, waits while the Q is empty.
+     * @return the max item of the Q, CLOSED if the Q is closed and empty.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    long take() throws InterruptedException;
+
+    /**
+     * Gets the maximum item of the Q and removes it, waits up to the given time
+     * while the Q is empty.
+     * @param timeout is the longest time to wait.
+     * @param unit is the unit of the timeout.
+     * @return the max item of the Q, CLOSED if the Q is closed and empty,
+     *         EMPTY if the time is out.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    long poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Removes up to maxElements of the largest items, without waiting.
+     * @param dest is the array the items are written to, largest first.
+     * @param maxElements is the largest number of items to remove.
+     * @return the number of items removed.
+     */
+    int drainTo(long[] dest, int maxElements);
+
+    /**
+     * Marks the end of the production, wakes up all waiting consumers.
+     */
+    void close();
+
+    boolean isClosed();
+
+    int size();
+}
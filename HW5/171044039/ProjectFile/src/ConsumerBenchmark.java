@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures how the produce-consume stream scales with the consumers of each
+ * scheme, and how strict the order of the relaxed queues is:
+ *   stream : a PixelPriority job with N consumers for each scheme and P parts
+ *            for each consumer, writing the pixels as text to /dev/null.
+ *   order  : all pixels are put to a MultiLongQueue of N*P parts, then taken
+ *            one by one; the mean distance of a taken pixel from its place in
+ *            the strict order (rank error) is printed, 0 for a strict queue.
+ * Each case is run a few times to warm up, the best time is printed with the
+ * throughput in pixels/sec. Scaling depends on the cores of the machine.
+ * Usage: ConsumerBenchmark pixelNumber [maxConsumers]
+ * @see MultiLongQueue
+ * @see PixelPriority#useConsumers(int, int)
+ * @author Ahmed Semih Özmekik
+ */
+public class ConsumerBenchmark
+{
+    private static final int WARMUP = 2;
+    private static final int MEASURE = 3;
+    private static final int[] PARTS = {1, 2, 4};
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length < 1){
+            System.out.println("Usage: ConsumerBenchmark pixelNumber [maxConsumers]");
+            return;
+        }
+        int pixelNumber = Integer.parseInt(args[0]);
+        int maxConsumers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int[] pixels = randomPixels(pixelNumber);
+
+        System.out.println("consumers,parts_per_consumer,pixels,ms,mpixels_per_s,mean_rank_error");
+        for (int consumers=1;consumers<=maxConsumers;consumers*=2){
+            for (int parts : PARTS){
+                if (consumers == 1 && parts > 1)
+                    continue; // one consumer has a strict queue.
+                double best = Double.MAX_VALUE;
+                for (int iteration=0;iteration<WARMUP+MEASURE;++iteration){
+                    double ms = stream(pixels, consumers, parts);
+                    if (iteration >= WARMUP)
+                        best = Math.min(best, ms);
+                }
+                System.out.printf("%d,%d,%d,%.1f,%.2f,%.1f%n", consumers, parts, pixelNumber, best,
+                        pixelNumber / best / 1e3, rankError(pixels, consumers*parts));
+            }
+        }
+    }
+
+    /* Returns the time of the job in milliseconds. */
+    private static double stream(int[] pixels, int consumers, int parts) throws IOException, InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(1 + 3*consumers);
+        try {
+            PixelPriority job = new PixelPriority();
+            job.useConsumers(consumers, parts);
+            job.setSink(new TextPixelSink("/dev/null"));
+            job.setPixels(pixels, pixels.length, 1);
+            long start = System.nanoTime();
+            job.start(executor);
+            job.awaitCompletion();
+            return (System.nanoTime() - start) / 1e6;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /* Order of the LEX queue taken by a single consumer, as a merge of the takes of many. */
+    private static double rankError(int[] pixels, int parts) throws InterruptedException
+    {
+        int[] keys = new int[pixels.length]; // in ascending order, the strict order is reversed.
+        for (int i=0;i<pixels.length;++i)
+            keys[i] = PixelPriority.lexKey(pixels[i]);
+        Arrays.sort(keys);
+
+        ConcurrentLongQueue queue = parts == 1 ? new BlockingLongQueue(new LongPriorityQueue(pixels.length))
+                : new MultiLongQueue(parts, 2, () -> new LongPriorityQueue(pixels.length / parts));
+        for (int rgb : pixels)
+            queue.put(LongPriorityQueue.pack(PixelPriority.lexKey(rgb), rgb));
+        queue.close();
+
+        long error = 0;
+        int taken = 0;
+        for (long e=queue.take();e!=ConcurrentLongQueue.CLOSED;e=queue.take(), ++taken){
+            int larger = pixels.length - upperBound(keys, LongPriorityQueue.keyOf(e)); // place of the key in the strict order.
+            error += Math.abs(larger - taken);
+        }
+        return (double) error / pixels.length;
+    }
+
+    /* Index of the first key greater than the key. */
+    private static int upperBound(int[] keys, int key)
+    {
+        int low = 0, high = keys.length;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if (keys[middle] <= key)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private static int[] randomPixels(int pixelNumber)
+    {
+        Random random = new Random(222);
+        int[] pixels = new int[pixelNumber];
+        for (int i=0;i<pixelNumber;++i)
+            pixels[i] = 0xff000000 | random.nextInt(1 << 24);
+        return pixels;
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.*;
+
+/**
+ * Represents the Priority Queue with array based d-ary heap implementation.
+ * Each node has d children, so the heap is log2(d) times shallower than the
+ * binary heap: poll compares more children per level but visits fewer
+ * levels, and the children of a node are next to each other in the array.
+ * Nodes are stored from index d-1, so that the children of every node start
+ * at a multiple of d in the array (a group of 8 references is 32 bytes with
+ * compressed references, half of a cache line).
+ * @see PriorityQueue
+ * @see AbstractHeapQueue
+ * @author Ahmed Semih Özmekik
+ */
+public class DaryPriorityQueue<E> extends AbstractHeapQueue<E>
+{
+    /**
+     * Default number of children, chosen by PriorityQueueBenchmark -matrix for
+     * pixel workloads, whose keys are precomputed. With costly comparators,
+     * such as computing a norm on each comparison, 4 is better.
+     */
+    public static final int DEFAULT_ARITY = 8;
+
+    public DaryPriorityQueue()
+    {
+        this(DEFAULT_ARITY, null);
+    }
+
+    /**
+     * Returns the Q with specified number of children and comparison scheme.
+     * @param arity is the number of children of a node, at least 2.
+     * @param comparator is the comparison scheme, null for natural ordering.
+     */
+    public DaryPriorityQueue(int arity, Comparator<E> comparator)
+    {
+        super(arity, arity-1, comparator);
+    }
+
+    /**
+     * Returns the Q of the given elements, built in linear time.
+     * @param elements are the elements, the array is not modified.
+     * @param arity is the number of children of a node, at least 2.
+     * @param comparator is the comparison scheme, null for natural ordering.
+     */
+    public DaryPriorityQueue(E[] elements, int arity, Comparator<E> comparator)
+    {
+        this(arity, comparator);
+        heapifyAll(elements);
+    }
+
+    /**
+     * Places the element to the hole at node child, moving smaller parents down.
+     * @param child is the node of the hole.
+     * @param e is the element.
+     */
+    @Override
+    protected void siftUp(int child, E e)
+    {
+        while (child > 0){
+            int parent = (child-1)/arity;
+            E parentData = theData[offset + parent];
+            if (compare(parentData, e) >= 0)
+                break;
+            theData[offset + child] = parentData;
+            child = parent;
+        }
+        theData[offset + child] = e;
+    }
+
+    /**
+     * Places the element to the hole at node parent, moving the largest children up.
+     * @param parent is the node of the hole.
+     * @param e is the element.
+     */
+    @Override
+    protected void siftDown(int parent, E e)
+    {
+        while (true){
+            int firstChild = arity*parent + 1;
+            if (firstChild >= size)
+                break;
+            int lastChild = Math.min(firstChild + arity, size);
+
+            int maxChild = firstChild;
+            E maxData = theData[offset + firstChild];
+            for (int child=firstChild+1;child<lastChild;++child){
+                E childData = theData[offset + child];
+                if (compare(maxData, childData) < 0){
+                    maxChild = child;
+                    maxData = childData;
+                }
+            }
+            if (compare(e, maxData) >= 0)
+                break;
+            theData[offset + parent] = maxData;
+            parent = maxChild;
+        }
+        theData[offset + parent] = e;
+    }
+}
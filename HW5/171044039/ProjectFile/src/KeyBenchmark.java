@@ -0,0 +1,139 @@
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the key computation of each priority scheme in three paths:
+ *   scalar : the key of each pixel by PixelPriority, one call per pixel.
+ *   batch  : the scalar kernels of PixelKeys over rows of BLOCK pixels.
+ *   vector : the Vector API kernels of VectorPixelKeys over rows of BLOCK
+ *            pixels, if they are built and the JVM is run with
+ *            --add-modules jdk.incubator.vector; skipped otherwise.
+ * All paths write the keys of each row to the same row buffer, as the
+ * producer does, and return a checksum of the rows, which must be equal.
+ * Keys of the kernels are also checked to be equal to the scalar keys over
+ * the whole image.
+ * Each case is run a few times to warm up, the best time is printed with
+ * the throughput in pixels/sec.
+ * Usage: KeyBenchmark image | KeyBenchmark -random pixelNumber
+ * @see PixelKeys
+ * @author Ahmed Semih Özmekik
+ */
+public class KeyBenchmark
+{
+    private static final int WARMUP = 10;
+    private static final int MEASURE = 5;
+    private static final int BLOCK = 4096; // pixels of a kernel call, as a row of an image.
+    private static final String[] SCHEMES = {"LEX", "EUC", "BMX"};
+    private static final String[] PATHS = {"scalar", "batch", "vector"};
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1){
+            System.out.println("Usage: KeyBenchmark image | KeyBenchmark -random pixelNumber");
+            return;
+        }
+        int[] pixels = args[0].equals("-random") ? randomPixels(Integer.parseInt(args[1]))
+                                                 : RasterDecoder.decode(ImageIO.read(new File(args[0])));
+        int[] row = new int[BLOCK]; // keys of a row, for all paths.
+        int[] scalarKeys = new int[pixels.length];
+        int[] kernelKeys = new int[pixels.length];
+
+        /* Kernels of each path, none for scalar. */
+        PixelKeys.Kernel[][] kernels = {null, {PixelKeys.LEX, PixelKeys.EUC, PixelKeys.BMX}, null};
+        try {
+            kernels[2] = PixelKeys.vector();
+        } catch (UnsupportedOperationException e) {
+            System.err.println("vector path is skipped: " + e.getMessage());
+        }
+
+        System.out.println("scheme,path,pixels,ms,mpixels_per_s");
+        for (int s=0;s<SCHEMES.length;++s){
+            for (int i=0;i<pixels.length;++i)
+                scalarKeys[i] = scalarKey(s, pixels[i]);
+            long expected = 0; // checksum of the scalar path.
+            for (int path=0;path<PATHS.length;++path){
+                if (path > 0 && kernels[path] == null)
+                    continue;
+                double best = Double.MAX_VALUE;
+                for (int iteration=0;iteration<WARMUP+MEASURE;++iteration){
+                    long start = System.nanoTime();
+                    long checksum = path == 0 ? scalar(s, pixels, row) : batch(kernels[path][s], pixels, row);
+                    double ms = (System.nanoTime() - start) / 1e6;
+                    if (iteration >= WARMUP)
+                        best = Math.min(best, ms);
+                    if (path == 0)
+                        expected = checksum;
+                    else if (checksum != expected)
+                        throw new IllegalStateException("Checksums of the keys differ in " + PATHS[path] + "!");
+                }
+                System.out.printf("%s,%s,%d,%.2f,%.1f%n", SCHEMES[s], PATHS[path],
+                        pixels.length, best, pixels.length / best / 1e3);
+                if (path == 0)
+                    continue;
+                kernels[path][s].keys(pixels, 0, pixels.length, kernelKeys);
+                for (int i=0;i<pixels.length;++i){
+                    if (scalarKeys[i] != kernelKeys[i])
+                        throw new IllegalStateException("Keys of " + PATHS[path] + " differ at pixel " + i + "!");
+                }
+            }
+        }
+    }
+
+    /* Keys of a row are used by the producer before the next row, so one buffer is enough. */
+    private static long scalar(int scheme, int[] pixels, int[] row)
+    {
+        long checksum = 0;
+        for (int from=0;from<pixels.length;from+=BLOCK){
+            int to = Math.min(from+BLOCK, pixels.length);
+            switch (scheme){
+                case 0:
+                    for (int i=from;i<to;++i)
+                        row[i-from] = PixelPriority.lexKey(pixels[i]);
+                    break;
+                case 1:
+                    for (int i=from;i<to;++i)
+                        row[i-from] = PixelPriority.eucKey(pixels[i]);
+                    break;
+                default:
+                    for (int i=from;i<to;++i)
+                        row[i-from] = PixelPriority.bmxKey(pixels[i]);
+            }
+            checksum += row[0] + row[to-from-1];
+        }
+        return checksum;
+    }
+
+    private static long batch(PixelKeys.Kernel kernel, int[] pixels, int[] row)
+    {
+        long checksum = 0;
+        for (int from=0;from<pixels.length;from+=BLOCK){
+            int to = Math.min(from+BLOCK, pixels.length);
+            kernel.keys(pixels, from, to, row);
+            checksum += row[0] + row[to-from-1];
+        }
+        return checksum;
+    }
+
+    private static int scalarKey(int scheme, int rgb)
+    {
+        switch (scheme){
+            case 0:
+                return PixelPriority.lexKey(rgb);
+            case 1:
+                return PixelPriority.eucKey(rgb);
+            default:
+                return PixelPriority.bmxKey(rgb);
+        }
+    }
+
+    private static int[] randomPixels(int pixelNumber)
+    {
+        Random random = new Random(222);
+        int[] pixels = new int[pixelNumber];
+        for (int i=0;i<pixelNumber;++i)
+            pixels[i] = 0xff000000 | random.nextInt(1 << 24);
+        return pixels;
+    }
+}
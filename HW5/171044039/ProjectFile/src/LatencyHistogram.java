@@ -0,0 +1,96 @@
+/**
+ * Represents the histogram of latencies in nanoseconds, with a fixed
+ * relative precision, in the manner of HdrHistogram. Buckets are log-linear:
+ * values below 64 have a bucket each, and every range from 2^p to 2^(p+1)
+ * above is divided into 32 buckets, so a value is known within 1/32 (3%).
+ * Any long value fits in 1888 buckets, recording is a few instructions and
+ * never allocates.
+ * It is not synchronized, each thread records to its own histogram and
+ * histograms are added at the end.
+ * @see PipelineMetrics
+ * @author Ahmed Semih Özmekik
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BITS = 5; // 32 buckets for each power of 2.
+    private static final int BUCKETS = (64 - SUB_BITS) * (1 << SUB_BITS);
+
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    /**
+     * Records a value.
+     * @param value is the value, negative values are recorded as 0.
+     */
+    public void record(long value)
+    {
+        value = Math.max(0, value);
+        ++counts[bucketOf(value)];
+        ++count;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the values of the other histogram to this one.
+     * @param other is the other histogram.
+     */
+    public void add(LatencyHistogram other)
+    {
+        for (int b=0;b<BUCKETS;++b)
+            counts[b] += other.counts[b];
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public long count()
+    {
+        return count;
+    }
+
+    public long max()
+    {
+        return max;
+    }
+
+    public double mean()
+    {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the value below or at which the given percentage of the values are.
+     * @param percentile is from 0 to 100.
+     * @return the largest value of the bucket of the percentile, 0 if empty.
+     */
+    public long valueAtPercentile(double percentile)
+    {
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int b=0;b<BUCKETS;++b){
+            seen += counts[b];
+            if (seen >= rank)
+                return Math.min(max, highestValueOf(b));
+        }
+        return max;
+    }
+
+    /* Values with the same highest SUB_BITS+1 bits share a bucket. */
+    private static int bucketOf(long value)
+    {
+        int shift = Math.max(0, 63 - SUB_BITS - Long.numberOfLeadingZeros(value));
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    private static long highestValueOf(int bucket)
+    {
+        int shift = Math.max(0, (bucket >>> SUB_BITS) - 1);
+        long lowest = (long) (bucket - (shift << SUB_BITS)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
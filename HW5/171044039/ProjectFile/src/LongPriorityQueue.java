@@ -0,0 +1,141 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Represents the max Priority Queue of primitive long values with array based
+ * heap implementation. Values are compared as signed longs, so a priority key
+ * packed into the high 32 bits and a payload into the low 32 bits are ordered
+ * by the key first. No object is created per element.
+ * @see PriorityQueue
+ * @author Ahmed Semih Özmekik
+ */
+public class LongPriorityQueue implements LongQueue
+{
+    private long[] theData; // underlying heap array.
+    private int size = 0;
+
+    public LongPriorityQueue()
+    {
+        this(10);
+    }
+
+    /**
+     * Returns the Q with given initial capacity, which is not expanded
+     * until the number of elements exceeds it.
+     * @param capacity is the initial capacity.
+     */
+    public LongPriorityQueue(int capacity)
+    {
+        theData = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Packs the priority key and the payload into one value.
+     * @param key is the priority, compared as signed int.
+     * @param payload is the value carried with the key, such as RGB or pixel index.
+     * @return the packed value.
+     */
+    public static long pack(int key, int payload)
+    {
+        return ((long) key << 32) | (payload & 0xffffffffL);
+    }
+
+    /**
+     * Returns the key of a packed value.
+     * @param packed is the packed value.
+     * @return the priority key.
+     */
+    public static int keyOf(long packed)
+    {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * Returns the payload of a packed value.
+     * @param packed is the packed value.
+     * @return the payload.
+     */
+    public static int payloadOf(long packed)
+    {
+        return (int) packed;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Adds a new element.
+     * @param e new element to be added.
+     */
+    @Override
+    public void offer(long e)
+    {
+        if (size == theData.length) // capacity is reached
+            theData = Arrays.copyOf(theData, 2*theData.length);
+
+        /* Parents smaller than the element are moved down, then the element is placed once. */
+        int child = size++;
+        while (child > 0){
+            int parent = (child-1)/2;
+            if (theData[parent] >= e)
+                break;
+            theData[child] = theData[parent];
+            child = parent;
+        }
+        theData[child] = e;
+    }
+
+    /**
+     * Gets the maximum item of the Q and removes it.
+     * @return the max item of the Q.
+     * @throws NoSuchElementException if the Q is empty.
+     */
+    @Override
+    public long poll()
+    {
+        if (isEmpty())
+            throw new NoSuchElementException("Queue is empty!");
+
+        long result = theData[0];
+        long last = theData[--size];
+
+        /* Larger children are moved up along the path, then the last item is placed once. */
+        int parent = 0;
+        while (true){
+            int maxChild = 2*parent + 1;
+            if (maxChild >= size)
+                break;
+            if (maxChild+1 < size && theData[maxChild] < theData[maxChild+1])
+                ++maxChild;
+            if (last >= theData[maxChild])
+                break;
+            theData[parent] = theData[maxChild];
+            parent = maxChild;
+        }
+        if (size > 0)
+            theData[parent] = last;
+        return result;
+    }
+
+    /**
+     * Gets the max element of the Q.
+     * @return the max element of the Q.
+     * @throws NoSuchElementException if the Q is empty.
+     */
+    @Override
+    public long peek()
+    {
+        if (isEmpty())
+            throw new NoSuchElementException("Queue is empty!");
+        return theData[0];
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Represents the max priority queue of primitive long values, in which a
+ * priority key packed into the high 32 bits and a payload into the low 32
+ * bits are ordered by the key first.
+ * @see LongPriorityQueue
+ * @see BucketPriorityQueue
+ * @author Ahmed Semih Özmekik
+ */
+public interface LongQueue
+{
+    /**
+     * Adds a new element.
+     * @param e new element to be added.
+     */
+    void offer(long e);
+
+    /**
+     * Gets the maximum item of the Q and removes it.
+     * @return the max item of the Q.
+     * @throws java.util.NoSuchElementException if the Q is empty.
+     */
+    long poll();
+
+    /**
+     * Gets the max element of the Q.
+     * @return the max element of the Q.
+     * @throws java.util.NoSuchElementException if the Q is empty.
+     */
+    long peek();
+
+    int size();
+
+    default boolean isEmpty()
+    {
+        return size() == 0;
+    }
+}
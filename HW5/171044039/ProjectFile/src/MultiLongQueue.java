@@ -0,0 +1,274 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Represents the relaxed max priority queue for many consumers, a MultiQueue.
+ * Elements are kept in a number of parts, each a LongQueue with a lock of its
+ * own. A producer puts to a random part whose lock is free. A consumer looks
+ * at the largest elements of a few random parts (the choices), without their
+ * locks, and polls the part with the largest one; so consumers and producers
+ * rarely wait for the same lock.
+ * Order is relaxed: a polled element is not always the largest of the queue,
+ * but is among the largest with high probability. More parts give more
+ * throughput and a looser order, more choices a stricter order; one part is
+ * strict, same as BlockingLongQueue. The usual setting is 2 to 4 parts per
+ * consumer and 2 choices.
+ * drainTo takes from one part while its elements are not smaller than the
+ * largest element of the next best choice, so batches keep the same order.
+ * The size counts an element from before its put checks whether the Q is
+ * closed until after it is polled, so a closed Q of size 0 is finished: no
+ * put can still land in it. A consumer which finds all parts empty waits on
+ * notEmpty, and is signaled when an element lands in a part, or when the
+ * closed Q becomes finished.
+ * @see ConcurrentLongQueue
+ * @author Ahmed Semih Özmekik
+ */
+public class MultiLongQueue implements ConcurrentLongQueue
+{
+    private static final int ATTEMPTS = 4; // random choices before all parts are scanned.
+    private static final long NONE = Long.MIN_VALUE; // top of an empty part.
+
+    private final Part[] parts;
+    private final int choices;
+    private final AtomicInteger size = new AtomicInteger(); // elements being put or in the parts.
+    private final AtomicInteger waiters = new AtomicInteger(); // consumers waiting on notEmpty.
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private volatile boolean closed = false;
+
+    /**
+     * Returns the Q with given number of parts and choices.
+     * @param partNumber is the number of parts, at least 1.
+     * @param choices is the number of parts compared by a poll, at least 1.
+     * @param factory creates the queue of each part.
+     */
+    public MultiLongQueue(int partNumber, int choices, Supplier<LongQueue> factory)
+    {
+        if (partNumber < 1 || choices < 1)
+            throw new IllegalArgumentException("Number of parts and choices must be at least 1!");
+        this.choices = Math.min(choices, partNumber);
+        parts = new Part[partNumber];
+        for (int p=0;p<partNumber;++p)
+            parts[p] = new Part(factory.get());
+    }
+
+    @Override
+    public void put(long e)
+    {
+        if (e == CLOSED || e == EMPTY)
+            throw new IllegalArgumentException("Reserved value can not be put!");
+        /* Counted before closed is read, so a consumer which sees the Q closed and empty is never wrong. */
+        size.incrementAndGet();
+        if (closed){
+            removed(1);
+            throw new IllegalStateException("Queue is closed!");
+        }
+
+        int p = ThreadLocalRandom.current().nextInt(parts.length);
+        for (int tries=1;!parts[p].lock.tryLock();++tries){
+            p = (p+1) % parts.length;
+            if (tries == parts.length){ // all parts are busy
+                parts[p].lock.lock();
+                break;
+            }
+        }
+        Part part = parts[p];
+        try {
+            part.queue.offer(e);
+            part.top = part.queue.peek();
+        } finally {
+            part.lock.unlock();
+        }
+
+        /* Consumers count themselves as waiting before they look at the parts, so one of both sees the other. */
+        if (waiters.get() > 0){
+            waitLock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public long take() throws InterruptedException
+    {
+        long[] element = new long[1];
+        while (true){
+            if (pollParts(element, 1) == 1)
+                return element[0];
+
+            waitLock.lockInterruptibly();
+            waiters.incrementAndGet();
+            try {
+                while (!isFinished() && !hasElements())
+                    notEmpty.await();
+                if (isFinished())
+                    return CLOSED;
+            } finally {
+                waiters.decrementAndGet();
+                waitLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public long poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long nanos = unit.toNanos(timeout);
+        long[] element = new long[1];
+        while (true){
+            if (pollParts(element, 1) == 1)
+                return element[0];
+
+            waitLock.lockInterruptibly();
+            waiters.incrementAndGet();
+            try {
+                while (!isFinished() && !hasElements()){
+                    if (nanos <= 0)
+                        return EMPTY;
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+                if (isFinished())
+                    return CLOSED;
+            } finally {
+                waiters.decrementAndGet();
+                waitLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int drainTo(long[] dest, int maxElements)
+    {
+        return pollParts(dest, Math.min(maxElements, dest.length));
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        signalAll();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    @Override
+    public int size()
+    {
+        return size.get();
+    }
+
+    public int partNumber()
+    {
+        return parts.length;
+    }
+
+    /* Closed, and no element is being put or in the parts. */
+    private boolean isFinished()
+    {
+        return closed && size.get() == 0;
+    }
+
+    /* Whether an element is in a part, read without the locks of the parts. */
+    private boolean hasElements()
+    {
+        for (Part part : parts){
+            if (part.top != NONE)
+                return true;
+        }
+        return false;
+    }
+
+    /* Uncounts removed elements, wakes up all consumers if the Q is finished by it. */
+    private void removed(int count)
+    {
+        if (size.addAndGet(-count) == 0 && closed && waiters.get() > 0)
+            signalAll();
+    }
+
+    private void signalAll()
+    {
+        waitLock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * Polls up to max elements from the best of the chosen parts, without waiting.
+     * @param dest is the array the elements are written to.
+     * @param max is the largest number of elements, at least 1.
+     * @return the number of elements polled, 0 if all parts are empty, though
+     *         an element may be being put.
+     */
+    private int pollParts(long[] dest, int max)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt=0;size.get()>0;++attempt){
+            Part best = null;
+            long bound = NONE; // top of the second best part.
+            int candidates = attempt < ATTEMPTS ? choices : parts.length;
+            for (int c=0;c<candidates;++c){
+                Part part = attempt < ATTEMPTS ? parts[random.nextInt(parts.length)] : parts[c];
+                if (best == null || part.top > best.top){
+                    if (best != null)
+                        bound = Math.max(bound, best.top);
+                    best = part;
+                }
+                else if (part != best)
+                    bound = Math.max(bound, part.top);
+            }
+            if (best.top == NONE){
+                if (attempt >= ATTEMPTS)
+                    return 0; // all parts are empty, the caller waits for a put.
+                continue;
+            }
+            if (attempt >= ATTEMPTS)
+                best.lock.lock();
+            else if (!best.lock.tryLock())
+                continue;
+
+            int count = 0;
+            try {
+                while (count < max && !best.queue.isEmpty() && (count == 0 || best.queue.peek() >= bound))
+                    dest[count++] = best.queue.poll();
+                best.top = best.queue.isEmpty() ? NONE : best.queue.peek();
+            } finally {
+                best.lock.unlock();
+            }
+            if (count > 0){
+                removed(count);
+                return count;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Represents a part: a queue, its lock, and its largest element, which is
+     * read without the lock.
+     */
+    private static class Part
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LongQueue queue;
+        private volatile long top = NONE;
+
+        private Part(LongQueue queue)
+        {
+            this.queue = queue;
+        }
+    }
+}
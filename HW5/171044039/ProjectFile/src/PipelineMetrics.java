@@ -0,0 +1,371 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Represents the measurements of the produce-consume stream of a
+ * PixelPriority job, to find whether the producer or a consumer is the
+ * bottleneck:
+ *   - depth of each queue over time, sampled by a thread of its own as
+ *     offers minus polls, without the lock of the queue,
+ *   - offers and polls of each queue, and their rates,
+ *   - time the consumers are blocked in take, waiting for pixels or a lock,
+ *   - enqueue to dequeue latency of each queue, in a LatencyHistogram.
+ * The producer never waits, the queues are unbounded. A queue may have many
+ * consumers, each records its latencies to its own histogram.
+ * Latency is sampled by value: about one of SAMPLE_RATE elements, chosen by
+ * a hash of the element, is timed at offer and at poll. Of equal elements in
+ * a queue at the same time, only the first is timed.
+ * Samples of the depth are JFR events (hw5.PixelQueueSample), and at the end
+ * of the job each queue is summarized by a JFR event (hw5.PixelQueue).
+ * @see PixelPriority#useMetrics(boolean)
+ * @author Ahmed Semih Özmekik
+ */
+public class PipelineMetrics
+{
+    /** One of this many elements is timed. */
+    public static final int SAMPLE_RATE = 64;
+    private static final int SAMPLE_SHIFT = 64 - Integer.numberOfTrailingZeros(SAMPLE_RATE);
+
+    private final String[] names;
+    private final long intervalNanos;
+    private final Thread sampler;
+
+    private final long start = System.nanoTime();
+    private volatile long end = 0;
+    private volatile long offers = 0; // written by the producer only, same for each queue.
+    private final AtomicLongArray polls;
+    private final AtomicLongArray blockedNanos;
+    private final LatencyHistogram[][] latencies; // recorded by each consumer of each queue.
+    private final Map<Long, Long> pending = new HashMap<>(); // offer time of the timed elements, by scheme and element.
+
+    /* Samples of the depth, written by the sampler and read after it is stopped. */
+    private long[] sampleTimes = new long[64];
+    private long[][] depths;
+    private int samples = 0;
+
+    /**
+     * Starts measuring and sampling the queues.
+     * @param names are the names of the queues.
+     * @param consumers is the number of consumers of each queue.
+     * @param interval is the time between the samples of the depth.
+     * @param unit is the unit of the interval.
+     */
+    PipelineMetrics(String[] names, int consumers, long interval, TimeUnit unit)
+    {
+        this.names = names;
+        intervalNanos = unit.toNanos(interval);
+        polls = new AtomicLongArray(names.length);
+        blockedNanos = new AtomicLongArray(names.length);
+        latencies = new LatencyHistogram[names.length][consumers];
+        depths = new long[names.length][sampleTimes.length];
+        for (int q=0;q<names.length;++q){
+            for (int c=0;c<consumers;++c)
+                latencies[q][c] = new LatencyHistogram();
+        }
+
+        sampler = new Thread(this::sampleDepths, "PipelineMetrics");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Called by the producer before a pixel is offered to the 3 queues.
+     * @param lex is the element of the first queue.
+     * @param euc is the element of the second queue.
+     * @param bmx is the element of the third queue.
+     */
+    void offering(long lex, long euc, long bmx)
+    {
+        ++offers;
+        enqueued(0, lex);
+        enqueued(1, euc);
+        enqueued(2, bmx);
+    }
+
+    /**
+     * Called by a consumer of a queue after it takes elements.
+     * @param queue is the index of the queue.
+     * @param consumer is the index of the consumer of the queue.
+     * @param first is the first element, which is waited for.
+     * @param rest are the elements taken without waiting.
+     * @param count is the number of elements in rest.
+     */
+    void polled(int queue, int consumer, long first, long[] rest, int count)
+    {
+        polls.addAndGet(queue, count + 1);
+        dequeued(queue, latencies[queue][consumer], first);
+        for (int i=0;i<count;++i)
+            dequeued(queue, latencies[queue][consumer], rest[i]);
+    }
+
+    /**
+     * Called by a consumer of a queue after each take.
+     * @param queue is the index of the queue.
+     * @param nanos is the time spent in take.
+     */
+    void blocked(int queue, long nanos)
+    {
+        blockedNanos.addAndGet(queue, nanos);
+    }
+
+    /**
+     * Stops the sampler and publishes the summary of each queue as JFR
+     * events. Called when the producer and all consumers are finished, also
+     * when the job failed; only the first call has an effect.
+     */
+    synchronized void finish()
+    {
+        if (end != 0)
+            return;
+        end = System.nanoTime();
+        sampler.interrupt();
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int q=0;q<names.length;++q){
+            QueueEvent event = new QueueEvent();
+            if (!event.isEnabled())
+                break;
+            event.queue = names[q];
+            event.offers = offers;
+            event.polls = polls.get(q);
+            event.maxDepth = maxDepth(q);
+            LatencyHistogram latency = latency(q);
+            event.blockedTime = blockedNanos.get(q);
+            event.latencyP50 = latency.valueAtPercentile(50);
+            event.latencyP99 = latency.valueAtPercentile(99);
+            event.latencyMax = latency.max();
+            event.commit();
+        }
+    }
+
+    public long elapsedNanos()
+    {
+        return (end == 0 ? System.nanoTime() : end) - start;
+    }
+
+    public long offers()
+    {
+        return offers;
+    }
+
+    public long polls(int queue)
+    {
+        return polls.get(queue);
+    }
+
+    /**
+     * Returns the time the consumers of a queue are blocked in take, in total.
+     * @param queue is the index of the queue.
+     * @return the time in nanoseconds.
+     */
+    public long blockedNanos(int queue)
+    {
+        return blockedNanos.get(queue);
+    }
+
+    /**
+     * Returns the latencies of a queue, of all its consumers.
+     * @param queue is the index of the queue.
+     * @return a new histogram.
+     */
+    public LatencyHistogram latency(int queue)
+    {
+        LatencyHistogram latency = new LatencyHistogram();
+        for (LatencyHistogram consumer : latencies[queue])
+            latency.add(consumer);
+        return latency;
+    }
+
+    /**
+     * Returns the times of the depth samples, from the start of the job.
+     * @return the times in nanoseconds.
+     */
+    public long[] sampleTimes()
+    {
+        return Arrays.copyOf(sampleTimes, samples);
+    }
+
+    /**
+     * Returns the depth of a queue at the sample times.
+     * @param queue is the index of the queue.
+     * @return the depths.
+     */
+    public long[] depths(int queue)
+    {
+        return Arrays.copyOf(depths[queue], samples);
+    }
+
+    public long maxDepth(int queue)
+    {
+        long max = 0;
+        for (int s=0;s<samples;++s)
+            max = Math.max(max, depths[queue][s]);
+        return max;
+    }
+
+    /**
+     * Returns the summary of the job, a line for each queue.
+     * @return the summary.
+     */
+    public String summary()
+    {
+        double seconds = elapsedNanos() / 1e9;
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Pipeline: %d pixels offered in %.1f ms, %.2f Mpx/s, %d depth samples%n",
+                offers, seconds * 1e3, offers / seconds / 1e6, samples));
+        summary.append(String.format("%-6s %10s %10s %12s %12s %10s %11s %9s %9s %9s %9s%n", "queue", "offers",
+                "polls", "offers/s", "polls/s", "maxDepth", "blocked_ms", "p50_us", "p99_us", "max_us", "samples"));
+        for (int q=0;q<names.length;++q){
+            LatencyHistogram latency = latency(q);
+            summary.append(String.format("%-6s %10d %10d %12.0f %12.0f %10d %11.1f %9.1f %9.1f %9.1f %9d%n",
+                    names[q], offers, polls.get(q), offers / seconds, polls.get(q) / seconds, maxDepth(q),
+                    blockedNanos.get(q) / 1e6, latency.valueAtPercentile(50) / 1e3,
+                    latency.valueAtPercentile(99) / 1e3, latency.max() / 1e3, latency.count()));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Writes the depth samples as CSV: time in milliseconds, then a column for each queue.
+     * @param out is the output.
+     * @throws IOException
+     */
+    public void writeDepths(Writer out) throws IOException
+    {
+        out.write("ms");
+        for (String name : names)
+            out.write("," + name);
+        out.write(System.lineSeparator());
+        for (int s=0;s<samples;++s){
+            out.write(String.format("%.3f", sampleTimes[s] / 1e6));
+            for (int q=0;q<names.length;++q)
+                out.write("," + depths[q][s]);
+            out.write(System.lineSeparator());
+        }
+    }
+
+    private void enqueued(int queue, long element)
+    {
+        if (!isTimed(element))
+            return;
+        long now = System.nanoTime();
+        synchronized (pending) {
+            pending.putIfAbsent(timedKey(queue, element), now);
+        }
+    }
+
+    private void dequeued(int queue, LatencyHistogram latency, long element)
+    {
+        if (!isTimed(element))
+            return;
+        Long offered;
+        synchronized (pending) {
+            offered = pending.remove(timedKey(queue, element));
+        }
+        if (offered != null)
+            latency.record(System.nanoTime() - offered);
+    }
+
+    /* Chooses the timed elements by the highest bits of a multiplicative hash. */
+    private static boolean isTimed(long element)
+    {
+        return (element * 0x9e3779b97f4a7c15L) >>> SAMPLE_SHIFT == 0;
+    }
+
+    /* Elements of different queues may be equal, the queue is in the highest bits, above the keys. */
+    private static long timedKey(int queue, long element)
+    {
+        return element ^ ((long) queue << 61);
+    }
+
+    /* Run() method of the sampler thread, until the job is finished. */
+    private void sampleDepths()
+    {
+        while (!Thread.currentThread().isInterrupted()){
+            sample();
+            try {
+                TimeUnit.NANOSECONDS.sleep(intervalNanos);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        sample(); // the empty queues at the end.
+    }
+
+    private void sample()
+    {
+        if (samples == sampleTimes.length){
+            sampleTimes = Arrays.copyOf(sampleTimes, 2*samples);
+            for (int q=0;q<depths.length;++q)
+                depths[q] = Arrays.copyOf(depths[q], 2*samples);
+        }
+        sampleTimes[samples] = System.nanoTime() - start;
+        for (int q=0;q<names.length;++q){
+            depths[q][samples] = offers - polls.get(q);
+            SampleEvent event = new SampleEvent();
+            if (event.isEnabled()){
+                event.queue = names[q];
+                event.depth = depths[q][samples];
+                event.offers = offers;
+                event.commit();
+            }
+        }
+        ++samples;
+    }
+
+    @Name("hw5.PixelQueueSample")
+    @Label("Pixel Queue Sample")
+    @Category("Pixel Priority")
+    @Description("Depth of a priority queue of a PixelPriority job")
+    static class SampleEvent extends Event
+    {
+        @Label("Queue")
+        String queue;
+        @Label("Depth")
+        long depth;
+        @Label("Offers")
+        long offers;
+    }
+
+    @Name("hw5.PixelQueue")
+    @Label("Pixel Queue")
+    @Category("Pixel Priority")
+    @Description("Summary of a priority queue at the end of a PixelPriority job")
+    static class QueueEvent extends Event
+    {
+        @Label("Queue")
+        String queue;
+        @Label("Offers")
+        long offers;
+        @Label("Polls")
+        long polls;
+        @Label("Max Depth")
+        long maxDepth;
+        @Label("Blocked Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long blockedTime;
+        @Label("Latency P50")
+        @Timespan(Timespan.NANOSECONDS)
+        long latencyP50;
+        @Label("Latency P99")
+        @Timespan(Timespan.NANOSECONDS)
+        long latencyP99;
+        @Label("Latency Max")
+        @Timespan(Timespan.NANOSECONDS)
+        long latencyMax;
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Computes the priority keys of many pixels at once, for each scheme of
+ * PixelPriority. These are the scalar kernels, one counted loop over int
+ * arrays each, which work on any JDK; the SIMD kernels of the Vector API are
+ * in VectorPixelKeys, built separately, and are used instead when they can
+ * be loaded (see vector and fastest). BMX looks up each component in a table
+ * whose values are already shifted to their place, three loads from a 3 KB
+ * table are faster than spreading the bits by shifts and masks one pixel at
+ * a time. Keys are the same as the keys of PixelPriority.
+ * @see PixelPriority
+ * @see KeyBenchmark
+ * @author Ahmed Semih Özmekik
+ */
+public class PixelKeys
+{
+    /**
+     * Represents the key computation of one scheme over a range of pixels.
+     */
+    public interface Kernel
+    {
+        /**
+         * Computes the keys of rgb[from] to rgb[to-1] into keys[0] to keys[to-from-1].
+         * @param rgb is the RGB values of the pixels.
+         * @param from is the first pixel.
+         * @param to is the end of the range, exclusive.
+         * @param keys is where the keys are written.
+         */
+        void keys(int[] rgb, int from, int to, int[] keys);
+    }
+
+    public static final Kernel LEX = PixelKeys::lex;
+    public static final Kernel EUC = PixelKeys::euc;
+    public static final Kernel BMX = PixelKeys::bmx;
+
+    /* Bits of a component spread to every third bit and shifted to their place in bitmix, also for PixelPriority. */
+    static final int[] RED = new int[256], GREEN = new int[256], BLUE = new int[256];
+    static {
+        for (int value=0;value<256;++value){
+            BLUE[value] = spread(value);
+            GREEN[value] = BLUE[value] << 1;
+            RED[value] = BLUE[value] << 2;
+        }
+    }
+
+    private PixelKeys() {/* intentionally left blank */}
+
+    /**
+     * Returns the kernels of the Vector API, which are built separately from
+     * the rest of the project, see VectorPixelKeys.
+     * @return the kernels of LEX, EUC and BMX.
+     * @throws UnsupportedOperationException if VectorPixelKeys is not built, or
+     *         the JVM is run without --add-modules jdk.incubator.vector.
+     */
+    public static Kernel[] vector()
+    {
+        try {
+            Class<?> keys = Class.forName("VectorPixelKeys");
+            return new Kernel[]{(Kernel) keys.getField("LEX").get(null), (Kernel) keys.getField("EUC").get(null),
+                    (Kernel) keys.getField("BMX").get(null)};
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new UnsupportedOperationException("VectorPixelKeys is not built or enabled for this JVM, see vector/VectorPixelKeys.java", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the vector kernels if they can be loaded, the scalar ones otherwise.
+     * @return the kernels of LEX, EUC and BMX.
+     */
+    public static Kernel[] fastest()
+    {
+        try {
+            return vector();
+        } catch (UnsupportedOperationException e) {
+            return new Kernel[]{LEX, EUC, BMX};
+        }
+    }
+
+    /**
+     * Lexicographical keys, the RGB values without alpha.
+     */
+    public static void lex(int[] rgb, int from, int to, int[] keys)
+    {
+        for (int i=from;i<to;++i)
+            keys[i-from] = rgb[i] & 0xffffff;
+    }
+
+    /**
+     * Euclidean norm keys, the squares of the norms.
+     */
+    public static void euc(int[] rgb, int from, int to, int[] keys)
+    {
+        for (int i=from;i<to;++i){
+            int red = (rgb[i] >>> 16) & 0xff, green = (rgb[i] >>> 8) & 0xff, blue = rgb[i] & 0xff;
+            keys[i-from] = red*red + green*green + blue*blue;
+        }
+    }
+
+    /**
+     * Bitmix keys, the bits of red, green and blue interleaved.
+     */
+    public static void bmx(int[] rgb, int from, int to, int[] keys)
+    {
+        for (int i=from;i<to;++i)
+            keys[i-from] = RED[(rgb[i] >>> 16) & 0xff] | GREEN[(rgb[i] >>> 8) & 0xff] | BLUE[rgb[i] & 0xff];
+    }
+
+    /* Spreads the 8 bits of a component to every third bit: each step halves the group size. */
+    private static int spread(int value)
+    {
+        value = (value | (value << 8)) & 0x0000f00f;
+        value = (value | (value << 4)) & 0x000c30c3;
+        value = (value | (value << 2)) & 0x00249249;
+        return value;
+    }
+}
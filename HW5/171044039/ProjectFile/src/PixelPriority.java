@@ -3,7 +3,16 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.Comparator;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 /**
  * Represents the pixel priority extractor/handler.
@@ -15,59 +24,475 @@ import java.util.Comparator;
  * Supports 3 color comparison methods: 1- Lexicographical (LEX)
  *                                      2- Euclidean norm (EUC)
  *                                      3- Bitmix (BMX)
+ * Pixels are kept as RGB ints, and each queue keeps a pixel as one long:
+ * the key of its scheme in the high bits and the RGB value in the low bits.
+ * Keys of every scheme are in a small range, so each queue can be a bucket
+ * queue instead of a binary heap.
+ * Each object is one job for one image, with its own queues and completion
+ * state. Jobs can run on a shared executor, see PixelPriorityEngine.
+ * For batch use, orderings() gives the complete orderings at once by sorting,
+ * without the queues.
+ * In compressed mode, a color histogram of the image is built first and each
+ * distinct color is one element of the queues; consumers write a color once
+ * per pixel, so the work on the queues depends on the number of colors.
+ * Images larger than memory can be streamed: the producer reads the image
+ * strip by strip from a PixelSource, in the same order of pixels.
+ * Each scheme may have many consumers sharing a MultiLongQueue, whose order
+ * is relaxed; with one consumer the queue is strict.
  *
- * @see PriorityQueue
+ * @see PixelPriorityEngine
+ * @see LongPriorityQueue
+ * @see BucketPriorityQueue
+ * @see ColorHistogram
+ * @see PixelSource
+ * @see PipelineMetrics
+ * @see MultiLongQueue
  * @author Ahmed Semih Özmekik
  */
 public class PixelPriority
 {
-    private RGBColor[][] img2D = null; // 2D array representation of image with RGB vectors.
+    private int[] img = null; // RGB values of the image, row by row, null if streamed.
+    private String stripFile = null; // image file read strip by strip, null if in memory.
+    private int stripRows = 0; // number of rows of a strip.
     private int width = 0; // Width of the image.
     private int height = 0; // Height of the image.
     private int xcoor = 0, ycoor = 0; // [x,y] coordinates in the image.
 
-    // Flag for to ease thread communications.
-    private static volatile boolean isCompleted = false;
+    /* Strip of the image the producer reads, rows from stripRow to stripEnd. */
+    private PixelSource source = null;
+    private int[] strip = null;
+    private int stripRow = 0, stripEnd = 0;
 
-    /* Priority Queues defined and created for each priority scheme. */
-    private final PriorityQueue<RGBColor> queueLEX = new PriorityQueue<>(new LEXComparator());
-    private final PriorityQueue<RGBColor> queueEUC = new PriorityQueue<>(new EUCComparator());
-    private final PriorityQueue<RGBColor> queueBMX = new PriorityQueue<>(new BMXComparator());
+    /* Key kernels of LEX, EUC and BMX, the Vector API ones if they are built. */
+    private static final PixelKeys.Kernel[] KERNELS = PixelKeys.fastest();
 
-    /* Singleton Design Pattern */
-    private static PixelPriority instance = new PixelPriority();
+    private static final int KEY_BLOCK = 4096; // pixels whose keys are computed at once by the offline orderings.
 
-    public static PixelPriority getInstance() { return instance; }
+    /* Largest keys of the priority schemes. */
+    static final int MAX_LEX_KEY = 0xffffff;
+    static final int MAX_EUC_KEY = 3*255*255;
+    static final int MAX_BMX_KEY = 0xffffff;
 
-    private PixelPriority() {/* intentionally left blank */}
+    /* Most buckets of all parts of a queue, as many as a single LEX queue has. */
+    static final long MAX_BUCKETS = 1L << 24;
+
+    /* Priority Queues defined for each priority scheme, created for the image. */
+    private ConcurrentLongQueue queueLEX = new BlockingLongQueue(new LongPriorityQueue());
+    private ConcurrentLongQueue queueEUC = new BlockingLongQueue(new LongPriorityQueue());
+    private ConcurrentLongQueue queueBMX = new BlockingLongQueue(new LongPriorityQueue());
+
+    private PixelSink sink = null; // where the threads write the pixels, standard output by default.
+    private PixelSink.Channel producerChannel = null;
+    private Executor executor = null; // runs the producer and the consumers.
+    private final AtomicInteger running = new AtomicInteger(); // producer and consumers not finished.
+    private final AtomicReference<Throwable> failure = new AtomicReference<>(); // first failure of the job, null if none.
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    /* Schemes whose queue is a bucket queue instead of a binary heap. */
+    private boolean bucketLEX = false, bucketEUC = false, bucketBMX = false;
+
+    private boolean compressed = false; // queues hold distinct colors.
+    private ColorHistogram histogram = null; // colors of the image in compressed mode.
+    private int nextColor = 0; // next entry of the histogram to be inserted.
+
+    private int consumers = 1; // consumers of each queue.
+    private int partsPerConsumer = 1; // parts of each queue for a consumer, if there are many consumers.
+    private int choices = 2; // parts compared by a take, if there are many consumers.
+
+    private boolean measured = false; // whether the stream is measured.
+    private PipelineMetrics metrics = null; // measurements of the stream, null if not measured.
+
+    public PixelPriority() {/* intentionally left blank */}
+
+    /**
+     * Chooses the queue implementation of each scheme, bucket queue if true,
+     * binary heap otherwise. Takes effect from the next setFile.
+     * @param lex for the Lexicographical queue.
+     * @param euc for the Euclidean norm queue.
+     * @param bmx for the Bitmix queue.
+     */
+    public void useBucketQueues(boolean lex, boolean euc, boolean bmx)
+    {
+        bucketLEX = lex;
+        bucketEUC = euc;
+        bucketBMX = bmx;
+    }
+
+    /**
+     * Chooses the compressed mode, in which the queues hold each distinct color
+     * once with its number of pixels. Takes effect from the next setFile.
+     * @param compressed is true for the compressed mode.
+     */
+    public void useColorHistogram(boolean compressed)
+    {
+        this.compressed = compressed;
+    }
+
+    /**
+     * Chooses the number of consumers of each scheme. With more than one, the
+     * queue of a scheme is a MultiLongQueue of consumers*partsPerConsumer
+     * parts, and the pixels are written in a relaxed order: each consumer
+     * writes its pixels in order to a channel of its own, and a pixel is among
+     * the largest of the queue when it is taken, not always the largest.
+     * More parts for a consumer give more throughput and a looser order, more
+     * choices a stricter order and less throughput.
+     * Each part of a bucket queue would need buckets of its own, so parts are
+     * bucket queues only if their buckets together are not more than
+     * MAX_BUCKETS (64MB), binary heaps otherwise: LEX and BMX have that many
+     * keys, so only EUC keeps its bucket queue with many parts.
+     * Takes effect from the next setFile.
+     * @param consumers is the number of consumers of each scheme, 1 for the strict order.
+     * @param partsPerConsumer is the number of parts of a queue for each consumer.
+     * @param choices is the number of parts compared by a take, at least 1.
+     */
+    public void useConsumers(int consumers, int partsPerConsumer, int choices)
+    {
+        if (consumers < 1 || partsPerConsumer < 1 || choices < 1)
+            throw new IllegalArgumentException("Number of consumers, parts and choices must be at least 1!");
+        this.consumers = consumers;
+        this.partsPerConsumer = partsPerConsumer;
+        this.choices = choices;
+    }
 
     /**
-     * Sets image for singleton. File is the name of the image.
+     * Chooses the number of consumers of each scheme, a take compares 2 parts.
+     * @param consumers is the number of consumers of each scheme, 1 for the strict order.
+     * @param partsPerConsumer is the number of parts of a queue for each consumer.
+     * @see #useConsumers(int, int, int)
+     */
+    public void useConsumers(int consumers, int partsPerConsumer)
+    {
+        useConsumers(consumers, partsPerConsumer, 2);
+    }
+
+    /**
+     * Chooses whether the produce-consume stream is measured: depth of the
+     * queues over time, offers and polls, time the consumers are blocked and
+     * latency of the pixels in the queues. Takes effect from the next start.
+     * @param measured is true to measure.
+     * @see #metrics()
+     */
+    public void useMetrics(boolean measured)
+    {
+        this.measured = measured;
+    }
+
+    /**
+     * Returns the measurements of the stream, complete when the job is completed,
+     * whether it failed or not.
+     * @return the metrics, null if the stream is not measured or not started.
+     */
+    public PipelineMetrics metrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Sets where the threads write the pixels they produce and consume.
+     * The sink is closed when the stream is completed.
+     * @param sink is the sink, such as TextPixelSink, BinaryPixelSink or PixelSink.NULL.
+     */
+    public void setSink(PixelSink sink)
+    {
+        this.sink = sink;
+    }
+
+    /**
+     * Sets image of the job. File is the name of the image.
      * @param file path to to image.
      * @throws IOException
      */
     public void setFile(String file) throws IOException
     {
 
-        // Get the image from given path and represent as 2D array.
-        BufferedImage img = ImageIO.read(new File(file));
-        width = img.getWidth();
-        height = img.getHeight();
-        img2D = new RGBColor[height][width];
-        for(int y=0;y<height;++y){
-            for (int x=0;x<width;++x)
-                img2D[y][x] = new RGBColor(img.getRGB(x,y));
+        // Get the image from given path and represent as RGB array.
+        BufferedImage image = ImageIO.read(new File(file));
+        if (image == null)
+            throw new IOException("Unsupported image: " + file);
+        setPixels(RasterDecoder.decode(image), image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Sets image of the job without decoding it whole. The producer reads the
+     * rows strip by strip when it needs them, and the compressed mode builds
+     * its histogram the same way, so only a few strips are in memory. Queues
+     * still hold every pixel unless the compressed mode is used.
+     * @param file path to the image.
+     * @param rowsPerStrip is the number of rows read at once.
+     * @throws IOException if the image can not be read.
+     * @see StripPixelSource
+     */
+    public void setFile(String file, int rowsPerStrip) throws IOException
+    {
+        if (executor != null)
+            throw new IllegalStateException("Job is already started!");
+        stripFile = file;
+        stripRows = rowsPerStrip;
+        try (PixelSource image = openSource()) {
+            setImage(null, image.width(), image.height(), compressed ? histogramOf(image) : null);
         }
     }
 
     /**
-     * Starts the produce-consume stream.
+     * Sets image of the job from RGB values, row by row.
+     * @param rgb is the RGB values of the pixels, not copied.
+     * @param width is the width of the image.
+     * @param height is the height of the image.
+     */
+    public void setPixels(int[] rgb, int width, int height)
+    {
+        if (rgb.length != width*height)
+            throw new IllegalArgumentException("Size of the image does not match!");
+        if (executor != null)
+            throw new IllegalStateException("Job is already started!");
+        stripFile = null;
+        setImage(rgb, width, height, compressed ? ColorHistogram.of(rgb) : null);
+    }
+
+    private void setImage(int[] rgb, int width, int height, ColorHistogram histogram)
+    {
+        if ((long) width*height > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Image is too large!");
+        this.img = rgb;
+        this.width = width;
+        this.height = height;
+        this.histogram = histogram;
+
+        // Queues hold every pixel (or color) at most, they never expand.
+        int capacity = compressed ? histogram.size() : width*height;
+        queueLEX = newQueue(bucketLEX, MAX_LEX_KEY, capacity);
+        queueEUC = newQueue(bucketEUC, MAX_EUC_KEY, capacity);
+        queueBMX = newQueue(bucketBMX, MAX_BMX_KEY, capacity);
+    }
+
+    /**
+     * Opens the source of the image, the array itself if it is in memory.
+     * @return the source.
+     * @throws IOException if the image can not be read.
+     */
+    private PixelSource openSource() throws IOException
+    {
+        if (stripFile == null)
+            return PixelSource.of(img, width, height);
+        return new StripPixelSource(stripFile, stripRows);
+    }
+
+    private static ColorHistogram histogramOf(PixelSource image) throws IOException
+    {
+        ColorHistogram histogram = new ColorHistogram();
+        for (int[] rows=image.nextStrip();rows!=null;rows=image.nextStrip()){
+            for (int color : rows)
+                histogram.add(color, 1);
+        }
+        return histogram;
+    }
+
+    private ConcurrentLongQueue newQueue(boolean bucket, int maxKey, int capacity)
+    {
+        if (consumers == 1)
+            return new BlockingLongQueue(newPart(bucket, maxKey, capacity));
+        int parts = consumers*partsPerConsumer;
+        boolean bucketParts = bucket && (maxKey+1L)*parts <= MAX_BUCKETS;
+        // Parts expand if they get more than their share.
+        return new MultiLongQueue(parts, choices, () -> newPart(bucketParts, maxKey, capacity / parts));
+    }
+
+    private static LongQueue newPart(boolean bucket, int maxKey, int capacity)
+    {
+        return bucket ? new BucketPriorityQueue(maxKey, capacity) : new LongPriorityQueue(capacity);
+    }
+
+    /**
+     * Starts the produce-consume stream, each thread is a new thread.
      */
     public void start()
     {
-        Thread thread1 = new Thread(this::producePixel); // producer of each queue.
-        thread1.start();
+        start(task -> new Thread(task).start());
+    }
+
+    /**
+     * Starts the produce-consume stream on the executor. Producer is submitted
+     * first, consumers after the first 100 pixels; consumers only wait for the
+     * producer of their job, so any number of executor threads works.
+     * @param executor runs the producer and the consumers.
+     */
+    public void start(Executor executor)
+    {
+        if (img == null && stripFile == null)
+            throw new IllegalStateException("Image is not set!");
+        if (this.executor != null)
+            throw new IllegalStateException("Job is already started!");
+        this.executor = executor;
+        if (sink == null)
+            sink = new TextPixelSink();
+        producerChannel = sink.open("Thread1");
+        if (measured)
+            metrics = new PipelineMetrics(new String[] {"LEX", "EUC", "BMX"}, consumers, 10, TimeUnit.MILLISECONDS);
+        running.set(1 + 3*consumers);
+        try {
+            executor.execute(this::producePixel); // producer of each queue.
+        } catch (RejectedExecutionException e) {
+            failed(e);
+            producerChannel.close();
+            for (int task=0;task<1+3*consumers;++task) // none of them is started.
+                finished();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the future which is completed when all pixels are consumed and
+     * written to the sink.
+     * @return the completion of the job.
+     */
+    public CompletableFuture<Void> completion()
+    {
+        return completion;
+    }
+
+    public boolean isCompleted()
+    {
+        return completion.isDone();
+    }
+
+    /**
+     * Waits until all pixels are consumed and written to the sink.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitCompletion() throws InterruptedException
+    {
+        try {
+            completion.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Job failed!", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the complete orderings of the pixels, without the produce-consume
+     * stream. For each scheme the (key, pixel) pairs of all pixels are packed
+     * to longs and sorted by Arrays.parallelSort; the three schemes are sorted
+     * at the same time. Pixels with the same key are in descending order of
+     * RGB value, as they are polled from the binary heaps. In compressed mode
+     * only the distinct colors are sorted.
+     * @return RGB values in LEX, EUC and BMX order, max first.
+     */
+    public int[][] orderings()
+    {
+        if (img == null && histogram == null)
+            throw new IllegalStateException("Orderings need the image in memory or the compressed mode!");
+        int[] rgb = histogram == null ? img : histogram.colors();
+        CompletableFuture<int[]> lex = CompletableFuture.supplyAsync(() -> ordering(rgb, KERNELS[0]));
+        CompletableFuture<int[]> euc = CompletableFuture.supplyAsync(() -> ordering(rgb, KERNELS[1]));
+        int[] bmx = ordering(rgb, KERNELS[2]);
+        int[][] orders = {lex.join(), euc.join(), bmx};
+
+        if (histogram != null){
+            for (int s=0;s<orders.length;++s)
+                orders[s] = expand(orders[s]);
+        }
+        return orders;
+    }
+
+    /* Repeats each color of the ordering as many times as its pixels. */
+    private int[] expand(int[] colors)
+    {
+        int[] pixels = new int[width*height];
+        int index = 0;
+        for (int color : colors){
+            int count = histogram.get(color);
+            Arrays.fill(pixels, index, index+count, color);
+            index += count;
+        }
+        return pixels;
+    }
+
+    /**
+     * Writes the image and its orderings to the sink, with the same channels
+     * as the produce-consume stream, then closes the sink. Job is completed
+     * when it returns.
+     */
+    public void writeOrderings()
+    {
+        if (executor != null)
+            throw new IllegalStateException("Job is already started!");
+        executor = Runnable::run;
+        if (sink == null)
+            sink = new TextPixelSink();
+        int[][] orders = orderings();
+
+        PixelSink.Channel[] channels = {sink.open("Thread1"), sink.open("Thread2-PQLEX"),
+                sink.open("Thread3-PQEUC"), sink.open("Thread4-PQBMX")};
+        try (PixelSource image = openSource()) {
+            for (int[] rows=image.nextStrip();rows!=null;rows=image.nextStrip()){
+                for (int rgb : rows)
+                    channels[0].write(rgb);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (int s=0;s<orders.length;++s){
+            for (int rgb : orders[s])
+                channels[s+1].write(rgb);
+        }
+        for (PixelSink.Channel channel : channels)
+            channel.close();
+        sink.close();
+        completion.complete(null);
+    }
+
+    /**
+     * Sorts the pixels by the key of a scheme. Keys are computed in parallel
+     * blocks by the kernel of the scheme.
+     * @param rgb is the RGB values of the pixels.
+     * @param kernel computes the keys of the scheme.
+     * @return RGB values in descending order of (key, RGB).
+     */
+    static int[] ordering(int[] rgb, PixelKeys.Kernel kernel)
+    {
+        long[] packed = new long[rgb.length];
+        IntStream.range(0, (rgb.length + KEY_BLOCK - 1) / KEY_BLOCK).parallel().forEach(block -> {
+            int from = block*KEY_BLOCK, to = Math.min(rgb.length, from+KEY_BLOCK);
+            int[] keys = new int[to-from];
+            kernel.keys(rgb, from, to, keys);
+            for (int i=from;i<to;++i)
+                packed[i] = LongPriorityQueue.pack(keys[i-from], rgb[i]);
+        });
+        Arrays.parallelSort(packed);
+
+        int[] result = new int[packed.length];
+        for (int i=0, last=packed.length-1;i<packed.length;++i)
+            result[i] = LongPriorityQueue.payloadOf(packed[last-i]);
+        return result;
+    }
+
+    /**
+     * Called once for the producer and each consumer when it ends, or for
+     * each one which is never started. The last one closes the sink and
+     * completes the job, with the first failure if there is one; so the job
+     * is completed once, after all its tasks.
+     */
+    private void finished()
+    {
+        if (running.decrementAndGet() != 0)
+            return;
+        if (metrics != null)
+            metrics.finish(); // the sampler is stopped whether the job failed or not.
+        try {
+            sink.close();
+        } catch (RuntimeException e) {
+            failed(e);
+        }
+        if (failure.get() == null)
+            completion.complete(null);
+        else
+            completion.completeExceptionally(failure.get());
+    }
 
+    /* Records the failure of a task, the job is completed with the first one. */
+    private void failed(Throwable e)
+    {
+        failure.compareAndSet(null, e);
     }
 
     /**
@@ -79,122 +504,156 @@ public class PixelPriority
     private void producePixel()
     {
 
-        /* Read the first 100 pixels from image and insert to each 3 queue. */
-        insertPixels(100);
-
-        /* After the first 100 pixels are inserted, create and start 3 threads. */
-        Thread thread2 = new PixelConsumer(queueLEX, // consumer of queueLEX.
-                "Thread2-PQLEX");
-        Thread thread3 = new PixelConsumer(queueEUC, // consumer of queueEUC.
-                "Thread3-PQEUC");
-        Thread thread4 = new PixelConsumer(queueBMX, // consumer of queueBMX.
-                "Thread4-PQBMX");
-
-        thread2.start();
-        thread3.start();
-        thread4.start();
-
-        /* Thread 1 continues to inserting remaining pixels. */
-        insertPixels();
+        int started = 0; // consumers started.
+        try {
+            source = openSource();
+
+            /* Read the first 100 pixels from image and insert to each 3 queue. */
+            insertPixels(100);
+
+            /* After the first 100 pixels are inserted, create and start the consumers of each queue. */
+            for (int k=0;k<consumers;++k){
+                String suffix = consumers == 1 ? "" : "-" + (k+1); // channels of many consumers are numbered.
+                executor.execute(new PixelConsumer(0, k, queueLEX, // consumer of queueLEX.
+                        sink.open("Thread2-PQLEX" + suffix)));
+                ++started;
+                executor.execute(new PixelConsumer(1, k, queueEUC, // consumer of queueEUC.
+                        sink.open("Thread3-PQEUC" + suffix)));
+                ++started;
+                executor.execute(new PixelConsumer(2, k, queueBMX, // consumer of queueBMX.
+                        sink.open("Thread4-PQBMX" + suffix)));
+                ++started;
+            }
 
+            /* Thread 1 continues to inserting remaining pixels. */
+            insertPixels();
+            producerChannel.close();
+            finished();
+        } catch (IOException | RuntimeException e) {
+            failed(e);
+            /* Consumers already started stop at the end of their queue, the others are never started. */
+            queueLEX.close();
+            queueEUC.close();
+            queueBMX.close();
+            producerChannel.close();
+            for (int consumer=started;consumer<3*consumers;++consumer)
+                finished();
+            finished();
+        } finally {
+            if (source != null)
+                source.close();
+            strip = null;
+        }
     }
 
     /**
-     * Represents the consumer thread for 3 threads.
-     * For each thread there is a unique queue. And this
-     * specific queue used as intrinsic locks for synchronization.
-     * There is one producer thread needs to be synchronized with 3 other
-     * consumer threads which doesn't necessarily need to synchronized
-     * with each other. Usage of unique queues as intrinsic locks achieves this.
+     * Represents the consumer task for 3 threads, or for 3 groups of threads.
+     * For each scheme there is a unique blocking queue. The queue is locked
+     * only while pixels are taken from it, so the producer keeps inserting
+     * while the consumer writes them to its channel of the sink. Consumer
+     * stops when the queue is closed by the producer and there is no pixel left.
      */
-    private static class PixelConsumer extends Thread
+    private class PixelConsumer implements Runnable
     {
-        private final PriorityQueue<RGBColor> queue;
-        private final String threadName;
+        private static final int BATCH = 64; // most pixels taken at once.
+
+        private final int index; // index of the queue in the metrics.
+        private final int consumer; // index of the consumer of the queue.
+        private final ConcurrentLongQueue queue;
+        private final PixelSink.Channel channel;
 
-        private PixelConsumer(PriorityQueue<RGBColor> queue, String threadName)
+        private PixelConsumer(int index, int consumer, ConcurrentLongQueue queue, PixelSink.Channel channel)
         {
+            this.index = index;
+            this.consumer = consumer;
             this.queue = queue;
-            this.threadName = threadName;
+            this.channel = channel;
         }
 
         @Override
         public void run() {
-            synchronized (queue) {
-                while (!isCompleted) {
-                    // Consumer waits for consumer if the queue is empty.
-                    while (queue.isEmpty() && !isCompleted) {
-                        try {
-                            queue.wait();
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    if (isCompleted)
+            long[] pixels = new long[BATCH];
+            try {
+                while (true) {
+                    // Waits for the first pixel, then takes the ones ready without waiting.
+                    long start = metrics == null ? 0 : System.nanoTime();
+                    long pixel = queue.take();
+                    if (metrics != null)
+                        metrics.blocked(index, System.nanoTime() - start);
+                    if (pixel == ConcurrentLongQueue.CLOSED)
                         break;
-                    RGBColor color = queue.remove();
-                    System.out.println(threadName + ": " + color);
-
+                    write(pixel);
+                    int count = queue.drainTo(pixels, BATCH);
+                    for (int i=0;i<count;++i)
+                        write(pixels[i]);
+                    if (metrics != null)
+                        metrics.polled(index, consumer, pixel, pixels, count);
                 }
-            }
-            // Consumer is free to consume all, since producer has finished it's job.
-            while(!queue.isEmpty()){
-                RGBColor color = queue.remove();
-                System.out.println(threadName + ": " + color);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                failed(e);
+            } catch (RuntimeException e) {
+                failed(e);
+            } finally {
+                channel.close();
+                finished();
             }
         }
+
+        /* Writes the pixel, or all pixels of the color in compressed mode. */
+        private void write(long pixel)
+        {
+            int rgb = LongPriorityQueue.payloadOf(pixel);
+            int copies = histogram == null ? 1 : histogram.get(rgb);
+            for (int i=0;i<copies;++i)
+                channel.write(rgb);
+        }
     }
 
     /**
      * Inserts all the pixels to each queue. (x,y) coordinates will continue from
      * where they left off. insertQueues() method and overloads are very specified
-     * methods for Thread1's job. Method's inner workings synchronized with 3 other
-     * threads.
+     * methods for Thread1's job. Queues are closed at the end, so that
+     * consumers stop after taking the remaining pixels.
+     * Keys of a row are computed at once by the kernels before it is inserted.
+     * In compressed mode few pixels are inserted, so only their keys are
+     * computed, one by one.
      */
     private void insertPixels()
     {
+        int[] lex = new int[width], euc = new int[width], bmx = new int[width]; // keys of the row.
         for( ; ycoor<height;++ycoor){
-            for ( ; xcoor<width;++xcoor){
-                RGBColor color = img2D[ycoor][xcoor];
-                System.out.println("Thread1:" + color);
-
-                synchronized (queueLEX) {
-                    queueLEX.offer(color);
-                    queueLEX.notify();
-                }
-                synchronized (queueEUC) {
-                    queueEUC.offer(color);
-                    queueEUC.notify();
-                }
-                synchronized (queueBMX) {
-                    queueBMX.offer(color);
-                    queueBMX.notify();
-                }
+            int row = rowOf(ycoor);
+            if (histogram != null){
+                for ( ; xcoor<width;++xcoor)
+                    insertPixel(strip[row + xcoor]);
+                xcoor = 0;
+                continue;
             }
+            KERNELS[0].keys(strip, row + xcoor, row + width, lex);
+            KERNELS[1].keys(strip, row + xcoor, row + width, euc);
+            KERNELS[2].keys(strip, row + xcoor, row + width, bmx);
+            for (int x=0;xcoor<width;++xcoor, ++x)
+                insertPixel(strip[row + xcoor], lex[x], euc[x], bmx[x]);
 
             xcoor = 0;
         }
-        synchronized (queueLEX) {isCompleted = true; queueLEX.notify();}
-        synchronized (queueEUC) {isCompleted = true; queueEUC.notify();}
-        synchronized (queueBMX) {isCompleted = true; queueBMX.notify();}
-
+        queueLEX.close();
+        queueEUC.close();
+        queueBMX.close();
     }
 
     /**
      * Inserts "N" many pixel to 3 queues. "N" being totalPixel parameter.
-     * This overload does not consist sync work since there is no need for
-     * first N pixels.
+     * Consumers are not started yet for the first N pixels.
      * @param totalPixel is the number of pixels to be inserted to each queue.
      */
     private void insertPixels(int totalPixel)
     {
         int pixel = 0; // read pixel number.
-        while(pixel<totalPixel){
-            RGBColor color = img2D[ycoor][xcoor];
-            System.out.println("Thread1: " + color);
-            queueLEX.offer(color);
-            queueEUC.offer(color);
-            queueBMX.offer(color);
+        while(pixel<totalPixel && ycoor<height){
+            int row = rowOf(ycoor); // may read the next strip, so it is called first.
+            insertPixel(strip[row + xcoor]);
 
             ++pixel;
             ++xcoor;
@@ -207,106 +666,96 @@ public class PixelPriority
 
 
     /**
-     * Represents the RGB(Red, Green, Blue) vector.
-     * I could have used Color Class from java.awt instead of writing one,
-     * yet for to avoid overhead and keep simplicity, I wrote mine vector
-     * representation.
+     * Returns the index of the row in the strip, reads the next strip of the
+     * source when the row is below the current one.
+     * @param y is the row.
+     * @return index of the first pixel of the row in the strip.
      */
-    private class RGBColor implements Comparable<RGBColor>
-    {
-        private final int RED;
-        private final int GREEN;
-        private final int BLUE;
-        private final int RGB; // keeps the RGB value.
-
-        /**
-         * Parses the pixel value to RGB vector.
-         * @param pixel RGB value.
-         */
-        private RGBColor(int pixel)
-        {
-            RGB = pixel;
-            RED = (pixel >> 16) & 0xff;
-            GREEN = (pixel >> 8) & 0xff;
-            BLUE = (pixel) & 0xff;
-        }
-
-        /**
-         * Lexicographical comparison implementation.
-         * @param other is other RGBColor to compare with.
-         * @return positive if this object is greater, otherwise negative and 0 for equality.
-         */
-        @Override
-        public int compareTo(RGBColor other)
-        {
-            return Integer.compare(RGB, other.RGB);
-        }
-
-        /**
-         * Returns the RGBColor string representation: [R,G,B]
-         * @return the RGBColor string.
-         */
-        @Override
-        public String toString() {
-            return String.format("[%d,%d,%d]", RED, GREEN, BLUE);
+    private int rowOf(int y)
+    {
+        if (y >= stripEnd){
+            try {
+                strip = source.nextStrip();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (strip == null)
+                throw new UncheckedIOException(new IOException("Image ended at row " + y));
+            stripRow = stripEnd;
+            stripEnd += strip.length / width;
         }
+        return (y - stripRow)*width;
     }
 
     /**
-     * Represents the Comparator which follows the Lexicographical
-     * comparison method.
+     * Writes the pixel and inserts it to 3 queues, its keys are computed one by
+     * one. In compressed mode, only the first pixel of each color is inserted:
+     * entries of the histogram are in order of first occurrence, so the pixel
+     * is the first one of its color if it has the color of the next entry.
+     * @param rgb is the RGB value of the pixel.
      */
-    private class LEXComparator implements Comparator<RGBColor>
+    private void insertPixel(int rgb)
     {
-        @Override
-        public int compare(RGBColor c1, RGBColor c2)
-        {
-            return c1.compareTo(c2);
+        if (histogram != null){
+            if (nextColor == histogram.size() || histogram.color(nextColor) != rgb){
+                producerChannel.write(rgb);
+                return;
+            }
+            ++nextColor;
         }
+        insertPixel(rgb, lexKey(rgb), eucKey(rgb), bmxKey(rgb));
     }
 
     /**
-     * Represents the Comparator which follows the Euclidean norm based
-     * comparison method.
+     * Writes the pixel and inserts it to 3 queues with given keys.
+     * @param rgb is the RGB value of the pixel.
+     * @param lex is the LEX key of the pixel.
+     * @param euc is the EUC key of the pixel.
+     * @param bmx is the BMX key of the pixel.
      */
-    private class EUCComparator implements Comparator<RGBColor>
+    private void insertPixel(int rgb, int lex, int euc, int bmx)
     {
-        @Override
-        public int compare(RGBColor c1, RGBColor c2)
-        {
-            // Get the Euclidean norms and compare them.
-            double norm1 = findNorm(c1);
-            double norm2 = findNorm(c2);
-
-            return Double.compare(norm1, norm2);
-        }
+        producerChannel.write(rgb);
+        long lexPixel = LongPriorityQueue.pack(lex, rgb);
+        long eucPixel = LongPriorityQueue.pack(euc, rgb);
+        long bmxPixel = LongPriorityQueue.pack(bmx, rgb);
+        if (metrics != null)
+            metrics.offering(lexPixel, eucPixel, bmxPixel);
+        queueLEX.put(lexPixel);
+        queueEUC.put(eucPixel);
+        queueBMX.put(bmxPixel);
+    }
 
-        /**
-         * Finds the norm of the given RGB Vector.
-         * @param c is the RGB Vector.
-         * @return the Euclidean norm of the vector.
-         */
-        private double findNorm(RGBColor c)
-        {
-            return Math.sqrt(c.RED*c.RED + c.GREEN*c.GREEN + c.BLUE*c.BLUE);
-        }
+    /**
+     * Lexicographical key, the RGB value itself without alpha.
+     * @param rgb is the RGB value.
+     * @return the key.
+     */
+    static int lexKey(int rgb)
+    {
+        return rgb & 0xffffff;
     }
 
     /**
-     * Represents the Comparator which follows the Bitmix
-     * comparison method.
+     * Euclidean norm key. Square root keeps the order,
+     * so the square of the norm is used.
+     * @param rgb is the RGB value.
+     * @return the key.
      */
-    private class BMXComparator implements Comparator<RGBColor>
+    static int eucKey(int rgb)
     {
-        @Override
-        public int compare(RGBColor c1, RGBColor c2)
-        {
-            // Get the bit mixed colors and compare the.
-            int bmxColor1 = bitmix(c1);
-            int bmxColor2 = bitmix(c2);
+        int red = (rgb >> 16) & 0xff, green = (rgb >> 8) & 0xff, blue = rgb & 0xff;
+        return red*red + green*green + blue*blue;
+    }
 
-            return Integer.compare(bmxColor1, bmxColor2);
-        }
+    /**
+     * Bitmix key.
+     * @param rgb is the RGB value.
+     * @return the key.
+     */
+    static int bmxKey(int rgb)
+    {
+        return bitmix((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
     }
 
     /**
@@ -317,28 +766,16 @@ public class PixelPriority
      *                                  GREEN = G1G2G3...
      *                                  BLUE = B1B2B3...
      *                                  MIXED = R1G1B1R2G2B2...
-     * @param color is the RGB vector.
+     * Each component is spread by the lookup table of PixelKeys, already
+     * shifted to its place.
+     * @param red is the red component.
+     * @param green is the green component.
+     * @param blue is the blue component.
      * @return the coded number.
      */
-    private int bitmix(RGBColor color)
+    private static int bitmix(int red, int green, int blue)
     {
-        int result = 0;
-        int power = 7; // Power starts from 7 (RGB uses 8 bit, 0-255)
-        for(int i=23;i>=0;i-=3){
-
-            // Get the digit from number via bit wise "&" operator.
-            int digitBinary = (int)Math.pow(2,power--);
-            int red = color.RED & digitBinary;
-            int green = color.GREEN & digitBinary;
-            int blue = color.BLUE & digitBinary;
-
-            digitBinary = (int)Math.pow(2, i);
-            result += (red != 0) ? digitBinary:0;
-            result += (green != 0) ? (digitBinary/2):0;
-            result += (blue != 0) ? (digitBinary/4):0;
-
-        }
-        return result;
+        return PixelKeys.RED[red] | PixelKeys.GREEN[green] | PixelKeys.BLUE[blue];
     }
 
 
@@ -0,0 +1,139 @@
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the engine which runs PixelPriority jobs of many images at the
+ * same time on a fixed number of threads. Each job has its own queues, sink
+ * and completion, the threads are shared. A job needs no thread of its own
+ * while it waits, so the engine works with any number of threads; more
+ * threads let more jobs overlap.
+ * Bucket queues of LEX and BMX have 2^24 buckets (64 MB each) per job, so
+ * they fit only a few jobs at once; binary heaps grow with the image.
+ * @see PixelPriority
+ * @author Ahmed Semih Özmekik
+ */
+public class PixelPriorityEngine implements AutoCloseable
+{
+    private final ExecutorService executor;
+    private final Set<PixelPriority> running = ConcurrentHashMap.newKeySet(); // jobs not completed.
+    private boolean lex = false, euc = false, bmx = false; // schemes with bucket queues.
+    private boolean closed = false; // jobs can not be submitted.
+
+    /**
+     * Returns the engine with a thread per available processor.
+     */
+    public PixelPriorityEngine()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns the engine with given number of threads.
+     * @param threads is the number of threads, at least 1.
+     */
+    public PixelPriorityEngine(int threads)
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads must be at least 1!");
+        executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "PixelPriorityEngine");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Chooses the queue implementation of each scheme for the next jobs.
+     * @see PixelPriority#useBucketQueues(boolean, boolean, boolean)
+     */
+    public void useBucketQueues(boolean lex, boolean euc, boolean bmx)
+    {
+        this.lex = lex;
+        this.euc = euc;
+        this.bmx = bmx;
+    }
+
+    /**
+     * Starts the job of the image file.
+     * @param file path to the image.
+     * @param sink where the pixels are written.
+     * @return the started job.
+     * @throws IOException if the image can not be read.
+     */
+    public PixelPriority submit(String file, PixelSink sink) throws IOException
+    {
+        PixelPriority job = newJob(sink);
+        job.setFile(file);
+        return start(job);
+    }
+
+    /**
+     * Starts the job of the image given as RGB values, row by row.
+     * @param rgb is the RGB values of the pixels, not copied.
+     * @param width is the width of the image.
+     * @param height is the height of the image.
+     * @param sink where the pixels are written.
+     * @return the started job.
+     */
+    public PixelPriority submit(int[] rgb, int width, int height, PixelSink sink)
+    {
+        PixelPriority job = newJob(sink);
+        job.setPixels(rgb, width, height);
+        return start(job);
+    }
+
+    private synchronized PixelPriority start(PixelPriority job)
+    {
+        if (closed)
+            throw new IllegalStateException("Engine is closed!");
+        running.add(job);
+        job.completion().whenComplete((result, failure) -> running.remove(job));
+        job.start(executor);
+        return job;
+    }
+
+    private PixelPriority newJob(PixelSink sink)
+    {
+        PixelPriority job = new PixelPriority();
+        job.useBucketQueues(lex, euc, bmx);
+        job.setSink(sink);
+        return job;
+    }
+
+    /**
+     * Lets the submitted jobs finish, then stops the threads, as
+     * awaitTermination. If interrupted, returns with the interrupt status
+     * set, and the threads stop when the jobs finish.
+     */
+    @Override
+    public void close()
+    {
+        try {
+            awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lets the submitted jobs finish, then stops the threads and waits for
+     * them. Jobs can not be submitted after.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitTermination() throws InterruptedException
+    {
+        CompletableFuture<?>[] jobs;
+        synchronized (this) {
+            closed = true;
+            jobs = running.stream().map(PixelPriority::completion).toArray(CompletableFuture<?>[]::new);
+        }
+        /* Producers submit their consumers later, so the executor is shut down after the jobs. */
+        CompletableFuture.allOf(jobs).whenComplete((result, failure) -> executor.shutdown());
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Represents where the pixel traces of the threads are written. Each thread
+ * opens its own channel, so that writing does not need synchronization
+ * between threads. Channels keep the order of their pixels, pixels of
+ * different channels may be interleaved in any order.
+ * @see AsyncPixelSink
+ * @author Ahmed Semih Özmekik
+ */
+public interface PixelSink
+{
+    /** Sink which drops the pixels, for measuring without output. */
+    PixelSink NULL = new PixelSink() {
+        @Override
+        public Channel open(String threadName)
+        {
+            return rgb -> { };
+        }
+
+        @Override
+        public void close() { }
+    };
+
+    /**
+     * Opens the channel of a thread.
+     * @param threadName is the name written with the pixels of the channel.
+     * @return the channel, to be used by one thread only.
+     */
+    Channel open(String threadName);
+
+    /**
+     * Writes what is left in the channels and releases the sink. All channels
+     * must be closed before.
+     */
+    void close();
+
+    /**
+     * Represents the writer of one thread.
+     */
+    interface Channel
+    {
+        /**
+         * Writes the pixel.
+         * @param rgb is the RGB value of the pixel.
+         */
+        void write(int rgb);
+
+        /**
+         * Passes the pixels written so far to the sink. Channel can not be
+         * used after.
+         */
+        default void close() { }
+    }
+}
@@ -0,0 +1,57 @@
+import java.io.IOException;
+
+/**
+ * Represents where the producer reads the pixels of an image. Pixels are
+ * given in strips of whole rows, from top to bottom, so that the image does
+ * not need to be in memory at once.
+ * @see StripPixelSource
+ * @author Ahmed Semih Özmekik
+ */
+public interface PixelSource extends AutoCloseable
+{
+    int width();
+
+    int height();
+
+    /**
+     * Returns the next rows of the image.
+     * @return RGB values of the rows, row by row, null after the last row.
+     * @throws IOException if the image can not be read.
+     */
+    int[] nextStrip() throws IOException;
+
+    /**
+     * Releases the source, strips can not be read after.
+     */
+    @Override
+    default void close() { }
+
+    /**
+     * Returns the source of an image in memory, which is one strip.
+     * @param rgb is the RGB values of the pixels, row by row.
+     * @param width is the width of the image.
+     * @param height is the height of the image.
+     * @return the source.
+     */
+    static PixelSource of(int[] rgb, int width, int height)
+    {
+        return new PixelSource() {
+            private boolean read = false;
+
+            @Override
+            public int width() { return width; }
+
+            @Override
+            public int height() { return height; }
+
+            @Override
+            public int[] nextStrip()
+            {
+                if (read)
+                    return null;
+                read = true;
+                return rgb;
+            }
+        };
+    }
+}
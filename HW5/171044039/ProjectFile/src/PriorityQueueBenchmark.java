@@ -0,0 +1,180 @@
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Measures bulk loading and draining of the PriorityQueue:
+ *   offer     : elements are offered one by one.
+ *   array     : the Q is built from an array by heapify.
+ *   addAll    : elements are added to an empty Q at once, by heapify.
+ *   poll      : elements are polled one by one.
+ *   drainTo   : elements are drained to a list.
+ * Elements are random Integers compared by a comparator, the order of the
+ * drained elements is checked. The best time of a few runs is printed.
+ * With -matrix, all elements are offered then polled for each combination of:
+ *   heap       : PriorityQueue, DaryPriorityQueue with 2, 4 and 8 children.
+ *   element    : Integer, Pixel (an object with RGB and precomputed key).
+ *   comparator : key (compares stored values), norm (computes the
+ *                Euclidean norm of the RGB on each comparison).
+ * Comparisons of a heap class share one call site, so a cell measured after
+ * others with different comparators is slower; a single cell can be chosen
+ * to run each one in its own JVM.
+ * Usage: PriorityQueueBenchmark [elementNumber]
+ *        PriorityQueueBenchmark -matrix [elementNumber [arity element comparator]]
+ *        (arity 0 is PriorityQueue)
+ * @see PriorityQueue
+ * @see DaryPriorityQueue
+ * @author Ahmed Semih Özmekik
+ */
+public class PriorityQueueBenchmark
+{
+    private static final int RUNS = 3;
+
+    public static void main(String[] args)
+    {
+        if (args.length > 0 && args[0].equals("-matrix")){
+            int n = (args.length > 1) ? Integer.parseInt(args[1]) : 2_000_000;
+            if (args.length > 4)
+                matrix(n, new int[]{Integer.parseInt(args[2])}, args[3], args[4]);
+            else
+                matrix(n, new int[]{0, 2, 4, 8}, null, null);
+            return;
+        }
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000_000;
+        Random random = new Random(222);
+        Integer[] elements = new Integer[n];
+        for (int i=0;i<n;++i)
+            elements[i] = random.nextInt();
+        Comparator<Integer> comparator = Integer::compare;
+
+        double[] best = new double[5];
+        Arrays.fill(best, Double.MAX_VALUE);
+        for (int run=0;run<RUNS;++run){
+            long start = System.nanoTime();
+            PriorityQueue<Integer> q = new PriorityQueue<>(comparator);
+            for (Integer e : elements)
+                q.offer(e);
+            best[0] = Math.min(best[0], (System.nanoTime() - start) / 1e6);
+
+            start = System.nanoTime();
+            int previous = Integer.MAX_VALUE;
+            while (!q.isEmpty()){
+                int e = q.poll();
+                if (e > previous)
+                    throw new IllegalStateException("Queue order is broken!");
+                previous = e;
+            }
+            best[3] = Math.min(best[3], (System.nanoTime() - start) / 1e6);
+
+            start = System.nanoTime();
+            q = new PriorityQueue<>(elements, comparator);
+            best[1] = Math.min(best[1], (System.nanoTime() - start) / 1e6);
+
+            start = System.nanoTime();
+            ArrayList<Integer> drained = new ArrayList<>(n);
+            q.drainTo(drained);
+            best[4] = Math.min(best[4], (System.nanoTime() - start) / 1e6);
+            for (int i=1;i<n;++i){
+                if (drained.get(i) > drained.get(i-1))
+                    throw new IllegalStateException("Queue order is broken!");
+            }
+
+            start = System.nanoTime();
+            q = new PriorityQueue<>(comparator);
+            q.addAll(drained);
+            best[2] = Math.min(best[2], (System.nanoTime() - start) / 1e6);
+        }
+
+        String[] names = {"offer", "array", "addAll", "poll", "drainTo"};
+        for (int i=0;i<names.length;++i)
+            System.out.printf("%s,%d,%.1f ms%n", names[i], n, best[i]);
+    }
+
+    /* Runs the cells of the given arities, element and comparator; all if null. */
+    private static void matrix(int n, int[] arities, String element, String comparator)
+    {
+        Random random = new Random(222);
+        Integer[] integers = new Integer[n];
+        Pixel[] pixels = new Pixel[n];
+        for (int i=0;i<n;++i){
+            int rgb = random.nextInt(1 << 24);
+            integers[i] = rgb;
+            pixels[i] = new Pixel(rgb);
+        }
+        Comparator<Integer> integerKey = Integer::compare;
+        Comparator<Integer> integerNorm = (c1, c2) -> Double.compare(norm(c1), norm(c2));
+        Comparator<Pixel> pixelKey = (c1, c2) -> Integer.compare(c1.key, c2.key);
+        Comparator<Pixel> pixelNorm = (c1, c2) -> Double.compare(norm(c1.rgb), norm(c2.rgb));
+
+        System.out.println("heap,arity,element,comparator,elements,offer_ms,poll_ms,total_ms");
+        for (int arity : arities){
+            if (selected("Integer", "key", element, comparator))
+                print(arity, "Integer", "key", n, measure(integers, arity, integerKey));
+            if (selected("Integer", "norm", element, comparator))
+                print(arity, "Integer", "norm", n, measure(integers, arity, integerNorm));
+            if (selected("Pixel", "key", element, comparator))
+                print(arity, "Pixel", "key", n, measure(pixels, arity, pixelKey));
+            if (selected("Pixel", "norm", element, comparator))
+                print(arity, "Pixel", "norm", n, measure(pixels, arity, pixelNorm));
+        }
+    }
+
+    private static boolean selected(String element, String comparator, String selectedElement, String selectedComparator)
+    {
+        return (selectedElement == null || selectedElement.equals(element))
+            && (selectedComparator == null || selectedComparator.equals(comparator));
+    }
+
+    /* Returns the best offer and poll times in milliseconds. */
+    private static <E> double[] measure(E[] elements, int arity, Comparator<E> comparator)
+    {
+        double[] best = {Double.MAX_VALUE, Double.MAX_VALUE};
+        for (int run=0;run<RUNS;++run){
+            long start = System.nanoTime();
+            AbstractQueue<E> q = (arity == 0) ? new PriorityQueue<>(comparator)
+                                              : new DaryPriorityQueue<>(arity, comparator);
+            for (E e : elements)
+                q.offer(e);
+            long offered = System.nanoTime();
+
+            E previous = q.poll();
+            while (!q.isEmpty()){
+                E e = q.poll();
+                if (comparator.compare(e, previous) > 0)
+                    throw new IllegalStateException("Queue order is broken!");
+                previous = e;
+            }
+            long polled = System.nanoTime();
+            best[0] = Math.min(best[0], (offered - start) / 1e6);
+            best[1] = Math.min(best[1], (polled - offered) / 1e6);
+        }
+        return best;
+    }
+
+    private static void print(int arity, String element, String comparator, int n, double[] times)
+    {
+        System.out.printf("%s,%d,%s,%s,%d,%.1f,%.1f,%.1f%n", arity == 0 ? "PriorityQueue" : "DaryPriorityQueue",
+                Math.max(2, arity), element, comparator, n, times[0], times[1], times[0] + times[1]);
+    }
+
+    private static double norm(int rgb)
+    {
+        int red = (rgb >> 16) & 0xff, green = (rgb >> 8) & 0xff, blue = rgb & 0xff;
+        return Math.sqrt(red*red + green*green + blue*blue);
+    }
+
+    /** Pixel as an object, like the RGBColor of the first PixelPriority. */
+    private static class Pixel
+    {
+        private final int rgb;
+        private final int key;
+
+        private Pixel(int rgb)
+        {
+            this.rgb = rgb;
+            key = PixelPriority.eucKey(rgb);
+        }
+    }
+}
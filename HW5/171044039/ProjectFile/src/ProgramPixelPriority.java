@@ -1,4 +1,6 @@
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -16,9 +18,49 @@ public class ProgramPixelPriority
         try {
             System.out.println("Enter the file name>");
             String file = new Scanner(System.in).next();
-            PixelPriority pixel = PixelPriority.getInstance();
-            pixel.setFile(file);
-            pixel.start();
+            PixelPriority pixel = new PixelPriority();
+            // Schemes given as arguments (LEX, EUC, BMX) use bucket queues.
+            List<String> schemes = Arrays.asList(args);
+            pixel.useBucketQueues(schemes.contains("LEX"), schemes.contains("EUC"), schemes.contains("BMX"));
+            // --histogram enqueues each distinct color once with its count.
+            pixel.useColorHistogram(schemes.contains("--histogram"));
+            // --metrics prints the measurements of the stream to the standard error at the end.
+            pixel.useMetrics(schemes.contains("--metrics"));
+            // Pixels are written to the standard output, unless one of:
+            // --text FILE, --binary FILE, --null (no output).
+            for (int i=0;i<args.length;++i){
+                if (args[i].equals("--text") && i+1 < args.length)
+                    pixel.setSink(new TextPixelSink(args[++i]));
+                else if (args[i].equals("--binary") && i+1 < args.length)
+                    pixel.setSink(new BinaryPixelSink(args[++i]));
+                else if (args[i].equals("--null"))
+                    pixel.setSink(PixelSink.NULL);
+            }
+            // --consumers N [PARTS [CHOICES]] takes each scheme by N consumers, in a relaxed order.
+            int consumers = schemes.indexOf("--consumers");
+            if (consumers >= 0 && consumers+1 < args.length){
+                boolean parts = consumers+2 < args.length && args[consumers+2].matches("\\d+");
+                boolean choices = parts && consumers+3 < args.length && args[consumers+3].matches("\\d+");
+                pixel.useConsumers(Integer.parseInt(args[consumers+1]), parts ? Integer.parseInt(args[consumers+2]) : 2,
+                        choices ? Integer.parseInt(args[consumers+3]) : 2);
+            }
+            // --strip ROWS reads the image strip by strip instead of decoding it whole.
+            int strip = schemes.indexOf("--strip");
+            if (strip >= 0 && strip+1 < args.length)
+                pixel.setFile(file, Integer.parseInt(args[strip+1]));
+            else
+                pixel.setFile(file);
+            // --offline writes the complete orderings, sorted at once.
+            if (schemes.contains("--offline"))
+                pixel.writeOrderings();
+            else
+                pixel.start();
+            if (pixel.metrics() != null) // also for a failed job, up to the failure.
+                pixel.completion().whenComplete((result, failure) -> System.err.print(pixel.metrics().summary()));
+            pixel.completion().whenComplete((result, failure) -> { // e.g. more channels than the sink can tell apart.
+                if (failure != null)
+                    failure.printStackTrace();
+            });
         } catch (IOException e) {
                 e.printStackTrace();
         }
@@ -0,0 +1,161 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the queue implementations for each priority scheme on the pixels
+ * of an image, or on random pixels. Two workloads are measured:
+ *   bulk   : all pixels are offered, then all are polled.
+ *   stream : 100 pixels are offered, then each offer is followed by a poll,
+ *            then the rest is polled; same as the producer and a consumer.
+ * Queues: PriorityQueue (generic binary heap of Long with a comparator),
+ * LongPriorityQueue (binary heap of packed longs), BucketPriorityQueue.
+ * Each case is run a few times to warm up, the best time is printed.
+ * Usage: QueueBenchmark image | QueueBenchmark -random pixelNumber
+ * @see PixelPriority
+ * @author Ahmed Semih Özmekik
+ */
+public class QueueBenchmark
+{
+    private static final int WARMUP = 2;
+    private static final int MEASURE = 3;
+    private static final String[] SCHEMES = {"LEX", "EUC", "BMX"};
+    private static final String[] QUEUES = {"PriorityQueue", "LongPriorityQueue", "BucketPriorityQueue"};
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1){
+            System.out.println("Usage: QueueBenchmark image | QueueBenchmark -random pixelNumber");
+            return;
+        }
+        int[] pixels = args[0].equals("-random") ? randomPixels(Integer.parseInt(args[1])) : imagePixels(args[0]);
+
+        System.out.println("scheme,queue,workload,pixels,ms,mpixels_per_s");
+        for (int s=0;s<SCHEMES.length;++s){
+            long[] entries = new long[pixels.length];
+            for (int i=0;i<pixels.length;++i)
+                entries[i] = LongPriorityQueue.pack(key(s, pixels[i]), pixels[i]);
+
+            for (String queue : QUEUES){
+                for (int stream=0;stream<2;++stream){
+                    double best = Double.MAX_VALUE;
+                    for (int iteration=0;iteration<WARMUP+MEASURE;++iteration){
+                        double ms = run(queue, s, entries, stream == 1);
+                        if (iteration >= WARMUP)
+                            best = Math.min(best, ms);
+                    }
+                    System.out.printf("%s,%s,%s,%d,%.1f,%.2f%n", SCHEMES[s], queue,
+                            stream == 1 ? "stream" : "bulk", pixels.length, best, pixels.length / best / 1e3);
+                }
+            }
+        }
+    }
+
+    /* Returns the time in milliseconds, checks that the polled keys are in order for bulk. */
+    private static double run(String queue, int scheme, long[] entries, boolean stream)
+    {
+        long start = System.nanoTime();
+        long checksum;
+        if (queue.equals("PriorityQueue")){
+            PriorityQueue<Long> q = new PriorityQueue<>((e1, e2) -> Integer.compare(
+                    LongPriorityQueue.keyOf(e1), LongPriorityQueue.keyOf(e2)));
+            checksum = stream ? streamGeneric(q, entries) : bulkGeneric(q, entries);
+        }
+        else {
+            LongQueue q = queue.equals("LongPriorityQueue") ? new LongPriorityQueue(entries.length)
+                                                            : new BucketPriorityQueue(maxKey(scheme), entries.length);
+            checksum = stream ? stream(q, entries) : bulk(q, entries);
+        }
+        double ms = (System.nanoTime() - start) / 1e6;
+        if (checksum == 1) // keeps the work from being removed.
+            System.out.print("");
+        return ms;
+    }
+
+    private static long bulk(LongQueue q, long[] entries)
+    {
+        for (long e : entries)
+            q.offer(e);
+        long checksum = 0;
+        int previous = Integer.MAX_VALUE;
+        while (!q.isEmpty()){
+            long e = q.poll();
+            if (LongPriorityQueue.keyOf(e) > previous)
+                throw new IllegalStateException("Queue order is broken!");
+            previous = LongPriorityQueue.keyOf(e);
+            checksum += e;
+        }
+        return checksum;
+    }
+
+    private static long stream(LongQueue q, long[] entries)
+    {
+        long checksum = 0;
+        for (int i=0;i<entries.length;++i){
+            q.offer(entries[i]);
+            if (i >= 100)
+                checksum += q.poll();
+        }
+        while (!q.isEmpty())
+            checksum += q.poll();
+        return checksum;
+    }
+
+    private static long bulkGeneric(PriorityQueue<Long> q, long[] entries)
+    {
+        for (long e : entries)
+            q.offer(e);
+        long checksum = 0;
+        while (!q.isEmpty())
+            checksum += q.poll();
+        return checksum;
+    }
+
+    private static long streamGeneric(PriorityQueue<Long> q, long[] entries)
+    {
+        long checksum = 0;
+        for (int i=0;i<entries.length;++i){
+            q.offer(entries[i]);
+            if (i >= 100)
+                checksum += q.poll();
+        }
+        while (!q.isEmpty())
+            checksum += q.poll();
+        return checksum;
+    }
+
+    private static int key(int scheme, int rgb)
+    {
+        switch (scheme){
+            case 0: return PixelPriority.lexKey(rgb);
+            case 1: return PixelPriority.eucKey(rgb);
+            default: return PixelPriority.bmxKey(rgb);
+        }
+    }
+
+    private static int maxKey(int scheme)
+    {
+        switch (scheme){
+            case 0: return PixelPriority.MAX_LEX_KEY;
+            case 1: return PixelPriority.MAX_EUC_KEY;
+            default: return PixelPriority.MAX_BMX_KEY;
+        }
+    }
+
+    private static int[] imagePixels(String file) throws IOException
+    {
+        BufferedImage image = ImageIO.read(new File(file));
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static int[] randomPixels(int pixelNumber)
+    {
+        Random random = new Random(222);
+        int[] pixels = new int[pixelNumber];
+        for (int i=0;i<pixelNumber;++i)
+            pixels[i] = 0xff000000 | random.nextInt(1 << 24);
+        return pixels;
+    }
+}
@@ -0,0 +1,347 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Checks the behavior of the priority queues against java.util.PriorityQueue
+ * as the reference, on random elements with a fixed seed:
+ *   heap     : PriorityQueue and DaryPriorityQueue with 2, 3, 4 and 8
+ *              children; random offers and polls, heapify of arrays and
+ *              addAll, pollBatch and drainTo order, iterator and spliterator
+ *              contents, trySplit coverage, late binding and fail-fast.
+ *   long     : LongPriorityQueue and BucketPriorityQueue, random offers and polls.
+ *   multi    : MultiLongQueue with one part is strict; with many parts and
+ *              consumers, every put accepted before close is taken once.
+ * Each check prints its name, the first failure throws IllegalStateException.
+ * Usage: QueueCheck
+ * @see AbstractHeapQueue
+ * @see MultiLongQueue
+ * @author Ahmed Semih Özmekik
+ */
+public class QueueCheck
+{
+    private static final Comparator<Integer> ORDER = Integer::compare;
+    private static final int[] ARITIES = {0, 2, 3, 4, 8}; // 0 is PriorityQueue.
+
+    private static final Random random = new Random(222);
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        for (int arity : ARITIES){
+            String name = arity == 0 ? "PriorityQueue" : "DaryPriorityQueue(" + arity + ")";
+            randomOperations(arity);
+            heapify(arity);
+            addAll(arity);
+            drain(arity);
+            iterator(arity);
+            spliterator(arity);
+            System.out.println("heap  " + name + ": OK");
+        }
+        longQueue("LongPriorityQueue", new LongPriorityQueue(4), false);
+        longQueue("BucketPriorityQueue", new BucketPriorityQueue(1000, 4), true);
+        strictMultiQueue();
+        concurrentMultiQueue();
+    }
+
+    private static AbstractHeapQueue<Integer> newQueue(int arity)
+    {
+        return arity == 0 ? new PriorityQueue<>(ORDER) : new DaryPriorityQueue<>(arity, ORDER);
+    }
+
+    private static AbstractHeapQueue<Integer> newQueue(int arity, Integer[] elements)
+    {
+        return arity == 0 ? new PriorityQueue<>(elements, ORDER) : new DaryPriorityQueue<>(elements, arity, ORDER);
+    }
+
+    /* Max heap of the reference. */
+    private static java.util.PriorityQueue<Integer> reference()
+    {
+        return new java.util.PriorityQueue<>(ORDER.reversed());
+    }
+
+    private static void randomOperations(int arity)
+    {
+        AbstractHeapQueue<Integer> q = newQueue(arity);
+        java.util.PriorityQueue<Integer> expected = reference();
+        for (int i=0;i<50_000;++i){
+            if (random.nextInt(3) > 0){
+                int e = random.nextInt(1000); // with duplicates.
+                q.offer(e);
+                expected.offer(e);
+            }
+            else
+                check(Objects.equals(q.poll(), expected.poll()), "poll differs", arity);
+            check(q.size() == expected.size(), "size differs", arity);
+            check(Objects.equals(q.peek(), expected.peek()), "peek differs", arity);
+        }
+        pollAll(q, expected, arity);
+    }
+
+    private static void heapify(int arity)
+    {
+        for (int n=0;n<=200;++n){
+            Integer[] elements = randomElements(n);
+            Integer[] copy = elements.clone();
+            AbstractHeapQueue<Integer> q = newQueue(arity, elements);
+            check(Arrays.equals(elements, copy), "array is modified by heapify", arity);
+            java.util.PriorityQueue<Integer> expected = reference();
+            expected.addAll(Arrays.asList(elements));
+            q.offer(-1); // the copy of the array grows.
+            expected.offer(-1);
+            pollAll(q, expected, arity);
+        }
+
+        /* Array of a subtype: the Q keeps its own Object[], so other Numbers can be added. */
+        Comparator<Number> byValue = Comparator.comparingDouble(Number::doubleValue);
+        AbstractHeapQueue<Number> numbers = arity == 0 ? new PriorityQueue<>(new Integer[]{1, 3, 2}, byValue)
+                : new DaryPriorityQueue<>(new Integer[]{1, 3, 2}, arity, byValue);
+        numbers.offer(2.5);
+        check(numbers.poll().intValue() == 3 && numbers.poll().doubleValue() == 2.5, "subtype array order", arity);
+    }
+
+    /* Both ways of addAll: heapify when the collection is not smaller than the Q, sifts otherwise. */
+    private static void addAll(int arity)
+    {
+        for (int[] sizes : new int[][]{{0, 50}, {10, 50}, {50, 10}, {50, 0}, {1000, 999}}){
+            AbstractHeapQueue<Integer> q = newQueue(arity);
+            java.util.PriorityQueue<Integer> expected = reference();
+            List<Integer> first = Arrays.asList(randomElements(sizes[0]));
+            List<Integer> second = Arrays.asList(randomElements(sizes[1]));
+            q.addAll(first);
+            expected.addAll(first);
+            check(q.addAll(second) == !second.isEmpty(), "addAll result", arity);
+            expected.addAll(second);
+            pollAll(q, expected, arity);
+        }
+        AbstractHeapQueue<Integer> q = newQueue(arity);
+        expectThrows(IllegalArgumentException.class, () -> q.addAll(q), "addAll to itself", arity);
+    }
+
+    private static void drain(int arity)
+    {
+        Integer[] elements = randomElements(1000);
+        AbstractHeapQueue<Integer> q = newQueue(arity, elements);
+        java.util.PriorityQueue<Integer> expected = reference();
+        expected.addAll(Arrays.asList(elements));
+
+        List<Integer> batch = new ArrayList<>();
+        check(q.pollBatch(100, batch::add) == 100, "pollBatch count", arity);
+        List<Integer> drained = new ArrayList<>();
+        check(q.drainTo(drained, 300) == 300, "drainTo count", arity);
+        batch.addAll(drained);
+        drained.clear();
+        check(q.drainTo(drained) == 600 && q.isEmpty(), "drainTo all", arity);
+        batch.addAll(drained);
+        for (Integer e : batch)
+            check(e.equals(expected.poll()), "drained order differs", arity);
+        check(q.drainTo(drained) == 0, "drainTo of empty Q", arity);
+        expectThrows(IllegalArgumentException.class, () -> q.drainTo(q), "drainTo to itself", arity);
+    }
+
+    private static void iterator(int arity)
+    {
+        Integer[] elements = randomElements(500);
+        AbstractHeapQueue<Integer> q = newQueue(arity, elements);
+        List<Integer> iterated = new ArrayList<>();
+        for (Integer e : q)
+            iterated.add(e);
+        check(sorted(iterated).equals(sorted(Arrays.asList(elements))), "iterator contents", arity);
+
+        Iterator<Integer> it = q.iterator();
+        it.next();
+        expectThrows(UnsupportedOperationException.class, it::remove, "iterator remove", arity);
+        q.offer(1);
+        expectThrows(ConcurrentModificationException.class, it::next, "iterator after offer", arity);
+        Iterator<Integer> afterPoll = q.iterator();
+        q.poll();
+        expectThrows(ConcurrentModificationException.class, afterPoll::next, "iterator after poll", arity);
+        Iterator<Integer> afterAddAll = q.iterator();
+        q.addAll(Arrays.asList(1, 2));
+        expectThrows(ConcurrentModificationException.class, afterAddAll::next, "iterator after addAll", arity);
+
+        Iterator<Integer> end = newQueue(arity).iterator();
+        check(!end.hasNext(), "iterator of empty Q", arity);
+        expectThrows(NoSuchElementException.class, end::next, "iterator past the end", arity);
+    }
+
+    private static void spliterator(int arity)
+    {
+        Integer[] elements = randomElements(10_000);
+        AbstractHeapQueue<Integer> q = newQueue(arity, elements);
+        List<Integer> all = sorted(Arrays.asList(elements));
+
+        /* Splits until no part can be split, the leaves cover every element once. */
+        List<Integer> covered = new ArrayList<>();
+        Deque<Spliterator<Integer>> parts = new ArrayDeque<>();
+        parts.push(q.spliterator());
+        int leaves = 0;
+        while (!parts.isEmpty()){
+            Spliterator<Integer> part = parts.pop();
+            long estimate = part.estimateSize();
+            Spliterator<Integer> prefix = part.trySplit();
+            if (prefix == null){
+                check(estimate <= 1, "unsplit part of " + estimate, arity);
+                part.forEachRemaining(covered::add);
+                ++leaves;
+            }
+            else {
+                check(prefix.estimateSize() + part.estimateSize() == estimate, "split sizes", arity);
+                parts.push(part);
+                parts.push(prefix);
+            }
+        }
+        check(sorted(covered).equals(all) && leaves == elements.length, "trySplit coverage", arity);
+        check(sorted(q.stream().parallel().collect(Collectors.toList())).equals(all), "parallel stream", arity);
+
+        /* Late binding: elements added before the first use are seen. */
+        Spliterator<Integer> late = q.spliterator();
+        q.offer(-5);
+        check(late.estimateSize() == elements.length + 1, "late binding size", arity);
+        List<Integer> seen = new ArrayList<>();
+        late.forEachRemaining(seen::add);
+        check(seen.contains(-5), "late binding element", arity);
+
+        Spliterator<Integer> advancing = q.spliterator();
+        advancing.tryAdvance(e -> { });
+        q.poll();
+        expectThrows(ConcurrentModificationException.class, () -> advancing.tryAdvance(e -> { }),
+                "tryAdvance after poll", arity);
+        Spliterator<Integer> remaining = q.spliterator();
+        remaining.estimateSize();
+        q.offer(7);
+        expectThrows(ConcurrentModificationException.class, () -> remaining.forEachRemaining(e -> { }),
+                "forEachRemaining after offer", arity);
+        Spliterator<Integer> empty = newQueue(arity).spliterator();
+        check(empty.trySplit() == null && !empty.tryAdvance(e -> { }), "spliterator of empty Q", arity);
+    }
+
+    /* Bucket queues keep elements of the same key in any order, so only the keys are compared. */
+    private static void longQueue(String name, LongQueue q, boolean keysOnly)
+    {
+        java.util.PriorityQueue<Long> expected = new java.util.PriorityQueue<>(Comparator.reverseOrder());
+        for (int i=0;i<100_000;++i){
+            if (random.nextInt(3) > 0 || expected.isEmpty()){
+                long e = LongPriorityQueue.pack(random.nextInt(1001), random.nextInt(1 << 24));
+                q.offer(e);
+                expected.offer(e);
+            }
+            else {
+                check(sameElement(expected.peek(), q.peek(), keysOnly), name + " peek differs", 0);
+                check(sameElement(expected.poll(), q.poll(), keysOnly), name + " poll differs", 0);
+            }
+            check(q.size() == expected.size(), name + " size differs", 0);
+        }
+        while (!expected.isEmpty())
+            check(sameElement(expected.poll(), q.poll(), keysOnly), name + " poll differs", 0);
+        expectThrows(NoSuchElementException.class, q::poll, name + " poll of empty Q", 0);
+        System.out.println("long  " + name + ": OK");
+    }
+
+    private static void strictMultiQueue() throws InterruptedException
+    {
+        MultiLongQueue q = new MultiLongQueue(1, 2, () -> new LongPriorityQueue(4));
+        java.util.PriorityQueue<Long> expected = new java.util.PriorityQueue<>(Comparator.reverseOrder());
+        for (int i=0;i<10_000;++i){
+            long e = LongPriorityQueue.pack(random.nextInt(1000), i);
+            q.put(e);
+            expected.offer(e);
+        }
+        q.close();
+        expectThrows(IllegalStateException.class, () -> q.put(1), "put after close", 0);
+        for (long e=q.take();e!=ConcurrentLongQueue.CLOSED;e=q.take())
+            check(e == expected.poll(), "one part order differs", 0);
+        check(expected.isEmpty(), "one part lost elements", 0);
+        System.out.println("multi MultiLongQueue(1 part): OK");
+    }
+
+    /* Producers race close(); every put which did not throw must be taken once. */
+    private static void concurrentMultiQueue() throws InterruptedException
+    {
+        for (int round=0;round<100;++round){
+            MultiLongQueue q = new MultiLongQueue(1 + round % 8, 2, () -> new LongPriorityQueue(16));
+            AtomicLong put = new AtomicLong(), taken = new AtomicLong();
+            List<Thread> threads = new ArrayList<>();
+            for (int c=0;c<1+round%4;++c){
+                threads.add(new Thread(() -> {
+                    try {
+                        while (q.take() != ConcurrentLongQueue.CLOSED)
+                            taken.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            Thread[] producers = new Thread[2];
+            for (int p=0;p<producers.length;++p){
+                producers[p] = new Thread(() -> {
+                    try {
+                        for (int i=0;;++i){
+                            q.put(LongPriorityQueue.pack(i & 0xffff, i));
+                            put.incrementAndGet();
+                        }
+                    } catch (IllegalStateException closed) {
+                        /* the end of the production. */
+                    }
+                });
+            }
+            threads.forEach(Thread::start);
+            for (Thread producer : producers)
+                producer.start();
+            Thread.sleep(round % 3);
+            q.close();
+            for (Thread producer : producers)
+                producer.join();
+            for (Thread consumer : threads){
+                consumer.join(10_000);
+                check(!consumer.isAlive(), "consumer hangs in round " + round, 0);
+            }
+            check(put.get() == taken.get(), "round " + round + ": put " + put + ", taken " + taken, 0);
+        }
+        System.out.println("multi MultiLongQueue(many parts, concurrent): OK");
+    }
+
+    private static void pollAll(AbstractHeapQueue<Integer> q, java.util.PriorityQueue<Integer> expected, int arity)
+    {
+        while (!expected.isEmpty())
+            check(Objects.equals(q.poll(), expected.poll()), "poll differs", arity);
+        check(q.isEmpty() && q.poll() == null && q.peek() == null, "empty Q", arity);
+    }
+
+    private static boolean sameElement(long expected, long actual, boolean keysOnly)
+    {
+        return keysOnly ? LongPriorityQueue.keyOf(expected) == LongPriorityQueue.keyOf(actual) : expected == actual;
+    }
+
+    private static Integer[] randomElements(int n)
+    {
+        Integer[] elements = new Integer[n];
+        for (int i=0;i<n;++i)
+            elements[i] = random.nextInt(n + 1);
+        return elements;
+    }
+
+    private static List<Integer> sorted(List<Integer> elements)
+    {
+        List<Integer> copy = new ArrayList<>(elements);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static void check(boolean condition, String message, int arity)
+    {
+        if (!condition)
+            throw new IllegalStateException(message + (arity > 0 ? " with arity " + arity : "") + "!");
+    }
+
+    private static void expectThrows(Class<? extends Throwable> type, Runnable action, String message, int arity)
+    {
+        try {
+            action.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e))
+                return;
+            throw new IllegalStateException(message + ": unexpected " + e, e);
+        }
+        check(false, message + ": no " + type.getSimpleName(), arity);
+    }
+}
@@ -0,0 +1,136 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.stream.IntStream;
+
+/**
+ * Decodes the pixels of an image into one array of RGB values, row by row,
+ * in the format of BufferedImage.getRGB: 0xAARRGGBB.
+ * Images with 8 bit sRGB components, interleaved in bytes (such as PNG read
+ * by ImageIO) or packed in ints, are read directly from the data buffer of
+ * the raster, without color model conversion. Other images are converted by
+ * getRGB. Rows are decoded in parallel blocks.
+ * @see PixelPriority
+ * @author Ahmed Semih Özmekik
+ */
+public class RasterDecoder
+{
+    private static final int ROWS_PER_TASK = 64;
+
+    private RasterDecoder() {/* intentionally left blank */}
+
+    /**
+     * Decodes the image.
+     * @param image is the image.
+     * @return the RGB values of the pixels, row by row.
+     */
+    public static int[] decode(BufferedImage image)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] rgb = new int[width*height];
+        RowDecoder decoder = decoderOf(image, rgb);
+
+        int tasks = (height + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            int last = Math.min(height, (t+1)*ROWS_PER_TASK);
+            for (int y=t*ROWS_PER_TASK;y<last;++y)
+                decoder.decodeRow(y);
+        });
+        return rgb;
+    }
+
+    /**
+     * Represents the decoding of one row into the output array.
+     */
+    private interface RowDecoder
+    {
+        void decodeRow(int y);
+    }
+
+    /* Chooses the direct decoder for the layout of the raster, getRGB if none fits. */
+    private static RowDecoder decoderOf(BufferedImage image, int[] rgb)
+    {
+        int width = image.getWidth();
+        Raster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        boolean sRGB = image.getColorModel().getColorSpace().isCS_sRGB()
+                && !image.getColorModel().isAlphaPremultiplied();
+        boolean translated = raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0;
+
+        if (sRGB && !translated && buffer.getNumBanks() == 1
+                && buffer instanceof DataBufferByte
+                && raster.getSampleModel() instanceof PixelInterleavedSampleModel
+                && image.getColorModel() instanceof ComponentColorModel
+                && is8Bit(image.getColorModel().getComponentSize())){
+            PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) raster.getSampleModel();
+            int bands = model.getNumBands();
+            if (bands == 3 || bands == 4)
+                return interleavedBytes(((DataBufferByte) buffer).getData(), buffer.getOffset(),
+                        model, bands == 4, width, rgb);
+        }
+
+        if (sRGB && !translated && buffer.getNumBanks() == 1
+                && buffer instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && image.getColorModel() instanceof DirectColorModel){
+            DirectColorModel colorModel = (DirectColorModel) image.getColorModel();
+            boolean alpha = colorModel.getAlphaMask() == 0xff000000;
+            if (colorModel.getRedMask() == 0xff0000 && colorModel.getGreenMask() == 0xff00
+                    && colorModel.getBlueMask() == 0xff && (alpha || colorModel.getAlphaMask() == 0))
+                return packedInts(((DataBufferInt) buffer).getData(), buffer.getOffset(),
+                        (SinglePixelPackedSampleModel) raster.getSampleModel(), alpha, width, rgb);
+        }
+
+        return y -> image.getRGB(0, y, width, 1, rgb, y*width, width);
+    }
+
+    private static RowDecoder interleavedBytes(byte[] data, int offset, PixelInterleavedSampleModel model,
+                                               boolean hasAlpha, int width, int[] rgb)
+    {
+        int[] bandOffsets = model.getBandOffsets();
+        int pixelStride = model.getPixelStride();
+        int scanlineStride = model.getScanlineStride();
+        int red = bandOffsets[0], green = bandOffsets[1], blue = bandOffsets[2];
+        int alpha = hasAlpha ? bandOffsets[3] : -1;
+
+        return y -> {
+            int in = offset + y*scanlineStride;
+            int out = y*width;
+            for (int x=0;x<width;++x, in+=pixelStride){
+                int a = hasAlpha ? (data[in+alpha] & 0xff) : 0xff;
+                rgb[out+x] = (a << 24) | ((data[in+red] & 0xff) << 16)
+                           | ((data[in+green] & 0xff) << 8) | (data[in+blue] & 0xff);
+            }
+        };
+    }
+
+    private static RowDecoder packedInts(int[] data, int offset, SinglePixelPackedSampleModel model,
+                                         boolean hasAlpha, int width, int[] rgb)
+    {
+        int scanlineStride = model.getScanlineStride();
+        int opaque = hasAlpha ? 0 : 0xff000000;
+
+        return y -> {
+            int in = offset + y*scanlineStride;
+            int out = y*width;
+            for (int x=0;x<width;++x)
+                rgb[out+x] = data[in+x] | opaque;
+        };
+    }
+
+    private static boolean is8Bit(int[] componentSizes)
+    {
+        for (int size : componentSizes){
+            if (size != 8)
+                return false;
+        }
+        return true;
+    }
+}
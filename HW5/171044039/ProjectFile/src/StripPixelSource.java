@@ -0,0 +1,167 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Represents the source which reads an image file strip by strip, so that
+ * images larger than memory can be processed. A reader thread reads each
+ * strip with ImageReadParam.setSourceRegion and decodes it by RasterDecoder
+ * into a bounded buffer; when the buffer is full, it waits for the producer.
+ * Reading starts with the first strip taken, so the size of an image can be
+ * known without decoding it.
+ * Memory is proportional to the strip size times the buffered strips.
+ * Readers of tiled or striped formats, such as TIFF, read only the rows of
+ * the region; some readers, such as PNG, decode the rows above the region
+ * again for each strip, so taller strips are faster for them.
+ * @see PixelSource
+ * @author Ahmed Semih Özmekik
+ */
+public class StripPixelSource implements PixelSource
+{
+    /** Default number of rows of a strip. */
+    public static final int DEFAULT_ROWS = 256;
+    private static final int BUFFERED_STRIPS = 2;
+    private static final int[] END = new int[0]; // marks the last strip.
+
+    private final ImageInputStream in;
+    private final ImageReader reader;
+    private final int width, height;
+    private final int rowsPerStrip;
+    private final BlockingQueue<int[]> strips = new ArrayBlockingQueue<>(BUFFERED_STRIPS);
+    private Thread readerThread = null; // started by the first nextStrip.
+    private volatile IOException failure = null;
+    private boolean ended = false;
+
+    /**
+     * Opens the image file and reads its size.
+     * @param file path to the image.
+     * @param rowsPerStrip is the number of rows of a strip, the last one may have less.
+     * @throws IOException if the file can not be opened or its format is not supported.
+     */
+    public StripPixelSource(String file, int rowsPerStrip) throws IOException
+    {
+        if (rowsPerStrip < 1)
+            throw new IllegalArgumentException("Strip must have at least 1 row!");
+        in = ImageIO.createImageInputStream(new File(file));
+        if (in == null)
+            throw new IOException("Can not open: " + file);
+        ImageReader opened = null;
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext())
+                throw new IOException("Unsupported image: " + file);
+            opened = readers.next();
+            opened.setInput(in, false, true);
+            width = opened.getWidth(0);
+            height = opened.getHeight(0);
+            if ((long) width*rowsPerStrip > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Strip is too large!");
+        } catch (IOException | RuntimeException e) {
+            /* Source is not returned, so the reader and the stream are released here. */
+            if (opened != null)
+                opened.dispose();
+            try {
+                in.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        reader = opened;
+        this.rowsPerStrip = rowsPerStrip;
+    }
+
+    @Override
+    public int width()
+    {
+        return width;
+    }
+
+    @Override
+    public int height()
+    {
+        return height;
+    }
+
+    /**
+     * Returns the next strip, waits until the reader thread decodes it.
+     * @return RGB values of the rows, row by row, null after the last row.
+     * @throws IOException if the image can not be read.
+     */
+    @Override
+    public int[] nextStrip() throws IOException
+    {
+        if (ended)
+            return null;
+        if (readerThread == null){
+            readerThread = new Thread(this::readStrips, "StripPixelSource");
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+        try {
+            int[] strip = strips.take();
+            if (strip != END)
+                return strip;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the image!", e);
+        }
+        ended = true;
+        if (failure != null)
+            throw failure;
+        return null;
+    }
+
+    /**
+     * Stops the reader thread and closes the file.
+     */
+    @Override
+    public void close()
+    {
+        if (readerThread != null){
+            reader.abort();
+            readerThread.interrupt();
+            try {
+                readerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        reader.dispose();
+        try {
+            in.close();
+        } catch (IOException e) {
+            /* nothing is written to the file */
+        }
+    }
+
+    /* Run() method of the reader thread. */
+    private void readStrips()
+    {
+        try {
+            ImageReadParam param = reader.getDefaultReadParam();
+            for (int y=0;y<height;y+=rowsPerStrip){
+                param.setSourceRegion(new Rectangle(0, y, width, Math.min(rowsPerStrip, height-y)));
+                strips.put(RasterDecoder.decode(reader.read(0, param)));
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException | OutOfMemoryError e) {
+            failure = new IOException("Can not decode the image!", e); // producer must not wait forever.
+        } catch (InterruptedException e) {
+            return; // closed, nobody takes the strips.
+        }
+        try {
+            strips.put(END);
+        } catch (InterruptedException e) {
+            /* closed */
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Represents the sink which writes each pixel as a line of text:
+ *   threadName: [R,G,B]
+ * Digits are written directly to the buffer, without String.format.
+ * @author Ahmed Semih Özmekik
+ */
+public class TextPixelSink extends AsyncPixelSink
+{
+    private static final int MAX_PIXEL_TEXT = 15; // ": [255,255,255]"
+
+    /**
+     * Creates the sink writing to the standard output.
+     */
+    public TextPixelSink()
+    {
+        this(System.out, false);
+    }
+
+    /**
+     * Creates the sink writing to the file.
+     * @param file is the path of the file.
+     * @throws FileNotFoundException
+     */
+    public TextPixelSink(String file) throws FileNotFoundException
+    {
+        this(new FileOutputStream(file), true);
+    }
+
+    /**
+     * Creates the sink writing to the stream.
+     * @param out is the stream.
+     * @param closeStream whether the stream is closed with the sink.
+     */
+    public TextPixelSink(OutputStream out, boolean closeStream)
+    {
+        super(out, closeStream);
+    }
+
+    @Override
+    protected int maxRecordSize(byte[] threadName)
+    {
+        return threadName.length + MAX_PIXEL_TEXT + System.lineSeparator().length();
+    }
+
+    @Override
+    protected int encode(byte[] buffer, int position, int channelId, byte[] threadName, int rgb)
+    {
+        System.arraycopy(threadName, 0, buffer, position, threadName.length);
+        position += threadName.length;
+        buffer[position++] = ':';
+        buffer[position++] = ' ';
+        buffer[position++] = '[';
+        position = writeComponent(buffer, position, (rgb >> 16) & 0xff);
+        buffer[position++] = ',';
+        position = writeComponent(buffer, position, (rgb >> 8) & 0xff);
+        buffer[position++] = ',';
+        position = writeComponent(buffer, position, rgb & 0xff);
+        buffer[position++] = ']';
+        String lineSeparator = System.lineSeparator();
+        for (int i=0;i<lineSeparator.length();++i)
+            buffer[position++] = (byte) lineSeparator.charAt(i);
+        return position;
+    }
+
+    /* Writes the decimal digits of a value from 0 to 255. */
+    private static int writeComponent(byte[] buffer, int position, int value)
+    {
+        if (value >= 100)
+            buffer[position++] = (byte) ('0' + value / 100);
+        if (value >= 10)
+            buffer[position++] = (byte) ('0' + value / 10 % 10);
+        buffer[position++] = (byte) ('0' + value % 10);
+        return position;
+    }
+}
@@ -0,0 +1,91 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Computes the priority keys of many pixels at once with the Vector API: each
+ * step takes as many pixels as the widest SIMD register of the machine holds
+ * (8 with AVX2, 16 with AVX-512), the pixels left at the end of the range are
+ * computed one by one by PixelPriority. BMX spreads the bits of each
+ * component by shifts and masks, which are lanewise operations, instead of
+ * the table lookups of PixelKeys. Keys are the same as the keys of
+ * PixelPriority.
+ * The Vector API is an incubator module, so this class is a source set of
+ * its own (module Vector), built after src with JDK 16 or later:
+ *   javac --release 21 --add-modules jdk.incubator.vector -cp out -d out vector/VectorPixelKeys.java
+ * and run with java --add-modules jdk.incubator.vector. The rest of the
+ * project builds on JDK 11 and finds the class by PixelKeys.vector; without
+ * it, the kernels of PixelKeys are used.
+ * @see PixelKeys
+ * @see KeyBenchmark
+ * @author Ahmed Semih Özmekik
+ */
+public class VectorPixelKeys
+{
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    public static final PixelKeys.Kernel LEX = VectorPixelKeys::lex;
+    public static final PixelKeys.Kernel EUC = VectorPixelKeys::euc;
+    public static final PixelKeys.Kernel BMX = VectorPixelKeys::bmx;
+
+    private VectorPixelKeys() {/* intentionally left blank */}
+
+    /**
+     * Lexicographical keys, the RGB values without alpha.
+     */
+    public static void lex(int[] rgb, int from, int to, int[] keys)
+    {
+        int i = from;
+        for (int bound=from+SPECIES.loopBound(to-from);i<bound;i+=SPECIES.length())
+            IntVector.fromArray(SPECIES, rgb, i).and(0xffffff).intoArray(keys, i-from);
+        for ( ;i<to;++i)
+            keys[i-from] = PixelPriority.lexKey(rgb[i]);
+    }
+
+    /**
+     * Euclidean norm keys, the squares of the norms.
+     */
+    public static void euc(int[] rgb, int from, int to, int[] keys)
+    {
+        int i = from;
+        for (int bound=from+SPECIES.loopBound(to-from);i<bound;i+=SPECIES.length()){
+            IntVector pixels = IntVector.fromArray(SPECIES, rgb, i);
+            IntVector red = component(pixels, 16), green = component(pixels, 8), blue = component(pixels, 0);
+            red.mul(red).add(green.mul(green)).add(blue.mul(blue)).intoArray(keys, i-from);
+        }
+        for ( ;i<to;++i)
+            keys[i-from] = PixelPriority.eucKey(rgb[i]);
+    }
+
+    /**
+     * Bitmix keys, the bits of red, green and blue interleaved.
+     */
+    public static void bmx(int[] rgb, int from, int to, int[] keys)
+    {
+        int i = from;
+        for (int bound=from+SPECIES.loopBound(to-from);i<bound;i+=SPECIES.length()){
+            IntVector pixels = IntVector.fromArray(SPECIES, rgb, i);
+            spread(component(pixels, 16)).lanewise(VectorOperators.LSHL, 2)
+                    .or(spread(component(pixels, 8)).lanewise(VectorOperators.LSHL, 1))
+                    .or(spread(component(pixels, 0)))
+                    .intoArray(keys, i-from);
+        }
+        for ( ;i<to;++i)
+            keys[i-from] = PixelPriority.bmxKey(rgb[i]);
+    }
+
+    /* The 8 bit component at the given shift of each pixel. */
+    private static IntVector component(IntVector pixels, int shift)
+    {
+        return pixels.lanewise(VectorOperators.LSHR, shift).and(0xff);
+    }
+
+    /* Spreads the 8 bits of each component to every third bit: each step halves the group size. */
+    private static IntVector spread(IntVector value)
+    {
+        value = value.or(value.lanewise(VectorOperators.LSHL, 8)).and(0x0000f00f);
+        value = value.or(value.lanewise(VectorOperators.LSHL, 4)).and(0x000c30c3);
+        value = value.or(value.lanewise(VectorOperators.LSHL, 2)).and(0x00249249);
+        return value;
+    }
+}
@@ -0,0 +1,83 @@
+import java.io.Closeable;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Represents the Graph implementation with Adjacency Matrix stored out of the
+ * Java heap, so that large matrices do not add to garbage collection pauses.
+ * The rows and the counters live in one memory segment of a shared arena,
+ * which is freed at once by close(). The graph can not be used after close.
+ * The foreign memory API is a preview in JDK 21 and final in JDK 22, so this
+ * class is a source set of its own (module OffHeap), built after src:
+ *   javac --release 21 --enable-preview -cp out -d out offheap/OffHeapGraph.java
+ * and run with java --enable-preview on JDK 21, or without the preview flags
+ * on JDK 22+. The rest of the project builds on JDK 11 and finds the class by
+ * BitsetGraph.offHeap.
+ * @author Ahmed Semih Özmekik
+ * @see MatrixGraph
+ */
+public class OffHeapGraph extends BitsetGraph implements Closeable {
+
+    private final Arena arena;
+    private final MemorySegment adjacencyMatrix; // size*words longs, row by row.
+    private final MemorySegment numberOfEdgesPointingTo; // size ints.
+
+    public OffHeapGraph(int size){
+        super(size);
+        /* Shared, since the closure workers access the rows too. */
+        arena = Arena.ofShared();
+        try {
+            adjacencyMatrix = arena.allocate(Math.max(1L, (long) size * words * Long.BYTES), Long.BYTES);
+            numberOfEdgesPointingTo = arena.allocate(Math.max(1L, (long) size * Integer.BYTES), Integer.BYTES);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int numberOfEdgesPointingTo(int source){
+        return numberOfEdgesPointingTo.getAtIndex(ValueLayout.JAVA_INT, source);
+    }
+
+    /**
+     * Frees the memory of the graph.
+     */
+    @Override
+    public void close(){
+        arena.close();
+    }
+
+    @Override
+    protected long word(int source, int w){
+        return adjacencyMatrix.getAtIndex(ValueLayout.JAVA_LONG, (long) source * words + w);
+    }
+
+    @Override
+    protected void setWord(int source, int w, long word){
+        adjacencyMatrix.setAtIndex(ValueLayout.JAVA_LONG, (long) source * words + w, word);
+    }
+
+    @Override
+    protected void orRow(int dest, int src){
+        long destStart = (long) dest * words;
+        long srcStart = (long) src * words;
+        for (int w=0;w<words;++w){
+            long merged = adjacencyMatrix.getAtIndex(ValueLayout.JAVA_LONG, destStart + w)
+                        | adjacencyMatrix.getAtIndex(ValueLayout.JAVA_LONG, srcStart + w);
+            adjacencyMatrix.setAtIndex(ValueLayout.JAVA_LONG, destStart + w, merged);
+        }
+    }
+
+    @Override
+    protected void addToDegree(int dest, int delta){
+        numberOfEdgesPointingTo.setAtIndex(ValueLayout.JAVA_INT, dest,
+                numberOfEdgesPointingTo.getAtIndex(ValueLayout.JAVA_INT, dest) + delta);
+    }
+
+    @Override
+    protected void clearDegrees(){
+        numberOfEdgesPointingTo.fill((byte) 0);
+    }
+}
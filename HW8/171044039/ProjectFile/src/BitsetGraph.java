@@ -0,0 +1,289 @@
+import java.lang.reflect.InvocationTargetException;
+import java.security.InvalidParameterException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Represents the Graph implementation with Adjacency Matrix whose rows are
+ * kept as bitsets of 64 bit words, so that a whole row can be merged into
+ * another one word by word. Subclasses decide where the words and the
+ * number of edges pointing to each vertex are stored: MatrixGraph on the
+ * heap, OffHeapGraph (built separately, see offHeap) out of it.
+ * @author Ahmed Semih Özmekik
+ * @see MatrixGraph
+ */
+public abstract class BitsetGraph implements Graph {
+
+    protected static final int WORD_BITS = 64;
+
+    protected final int capacity; // largest size the storage is allocated for.
+    protected int size;
+    protected int words; // number of words in each row.
+
+    protected BitsetGraph(int size){
+        if (size < 0)
+            throw new InvalidParameterException("Size can not be negative!");
+        this.capacity = size;
+        this.size = size;
+        words = wordsOf(size);
+    }
+
+    /**
+     * Creates the off-heap graph, which is built separately from the rest of
+     * the project, see OffHeapGraph.
+     * @param size is the number of vertices.
+     * @return the empty graph.
+     * @throws UnsupportedOperationException if OffHeapGraph is not built.
+     */
+    public static BitsetGraph offHeap(int size){
+        try {
+            return Class.forName("OffHeapGraph").asSubclass(BitsetGraph.class)
+                    .getConstructor(int.class).newInstance(size);
+        } catch (ClassNotFoundException | UnsupportedClassVersionError e) {
+            throw new UnsupportedOperationException("OffHeapGraph is not built for this JDK, see offheap/OffHeapGraph.java", e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Removes all edges and resizes the graph within its capacity, so that
+     * the storage can be reused for another input without allocation.
+     * Only the part used by the current size is cleared.
+     * @param size is the new number of vertices, at most the initial size.
+     */
+    public void reset(int size){
+        if (size < 0 || size > capacity)
+            throw new InvalidParameterException("Size must be between 0 and the capacity!");
+
+        for (int i=0;i<this.size;++i){
+            for (int w=0;w<words;++w)
+                setWord(i, w, 0);
+        }
+        clearDegrees();
+        this.size = size;
+        words = wordsOf(size);
+    }
+
+    /**
+     * Returns the largest size the graph can be reset to.
+     * @return the capacity.
+     */
+    public int capacity(){
+        return capacity;
+    }
+
+    /* Storage of the rows and the counters. */
+
+    protected abstract long word(int source, int w);
+
+    protected abstract void setWord(int source, int w, long word);
+
+    /** Merges the row of src into the row of dest. */
+    protected abstract void orRow(int dest, int src);
+
+    protected abstract void addToDegree(int dest, int delta);
+
+    protected abstract void clearDegrees();
+
+    @Override
+    public void addEdge(int source, int dest){
+        checkValidityOfIndex(source, dest);
+
+        if (!hasEdge(source, dest)){
+            setWord(source, dest / WORD_BITS, word(source, dest / WORD_BITS) | bit(dest));
+            addToDegree(dest, 1);
+        }
+    }
+
+    @Override
+    public void removeEdge(int source, int dest){
+        checkValidityOfIndex(source, dest);
+
+        if (hasEdge(source, dest)){
+            setWord(source, dest / WORD_BITS, word(source, dest / WORD_BITS) & ~bit(dest));
+            addToDegree(dest, -1);
+        }
+    }
+
+    @Override
+    public boolean hasEdge(int source, int dest){
+        return (word(source, dest / WORD_BITS) & bit(dest)) != 0;
+    }
+
+    /**
+     * Returns the number of bytes used by the rows and the counters.
+     * @return the memory footprint in bytes.
+     */
+    public long footprint(){
+        return (long) size * words * Long.BYTES + (long) size * Integer.BYTES;
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+
+    @Override
+    public int nextEdge(int source, int from){
+        if (from >= size)
+            return -1;
+
+        int w = from / WORD_BITS;
+        long word = word(source, w) & (-1L << (from % WORD_BITS));
+        while (word == 0){
+            if (++w == words)
+                return -1;
+            word = word(source, w);
+        }
+        return w * WORD_BITS + Long.numberOfTrailingZeros(word);
+    }
+
+    /* Merges the rows word by word, only the new bits are visited. */
+    @Override
+    public int addEdgesOf(int source, int other){
+        checkValidityOfIndex(source, other);
+
+        int added = 0;
+        int sourceWord = source / WORD_BITS, otherWord = other / WORD_BITS;
+        for (int w=0;w<words;++w){
+            long merged = word(other, w);
+            if (w == otherWord)
+                merged |= bit(other);
+            if (w == sourceWord)
+                merged &= ~bit(source);
+
+            long current = word(source, w);
+            long fresh = merged & ~current;
+            if (fresh == 0)
+                continue;
+            setWord(source, w, current | fresh);
+            added += Long.bitCount(fresh);
+            while (fresh != 0){
+                addToDegree(w * WORD_BITS + Long.numberOfTrailingZeros(fresh), 1);
+                fresh &= fresh - 1;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Uses the Floyd-Warshall scheme on bitset rows: for each pivot k, every
+     * row which has an edge to k is merged with the row of k. Rows are
+     * independent of each other for a fixed pivot, so they are split into
+     * blocks and handed to the given number of workers.
+     * @param parallelism number of workers, 1 runs on the calling thread.
+     */
+    @Override
+    public void transitiveClosure(int parallelism){
+        if (parallelism < 1)
+            throw new InvalidParameterException("Parallelism must be positive!");
+
+        ForkJoinPool pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+        int threshold = Math.max(64, size / (parallelism * 4));
+        try {
+            for (int k=0;k<size;++k){
+                if (isEmptyRow(k)) // nothing to pass to the fans of k.
+                    continue;
+                if (pool == null)
+                    mergePivot(k, 0, size);
+                else
+                    pool.invoke(new PivotTask(this, k, 0, size, threshold));
+            }
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+        recountEdges();
+    }
+
+    /* Merges the row of the pivot into the rows in [from, to) which point to the pivot. */
+    private void mergePivot(int pivot, int from, int to){
+        int pivotWord = pivot / WORD_BITS;
+        long pivotBit = bit(pivot);
+
+        for (int i=from;i<to;++i){
+            if ((word(i, pivotWord) & pivotBit) != 0)
+                orRow(i, pivot);
+        }
+    }
+
+    /* Drops the edges from vertices to themselves and counts the incoming edges again. */
+    private void recountEdges(){
+        clearDegrees();
+
+        for (int i=0;i<size;++i){
+            setWord(i, i / WORD_BITS, word(i, i / WORD_BITS) & ~bit(i));
+            for (int w=0;w<words;++w){
+                long word = word(i, w);
+                while (word != 0){
+                    addToDegree(w * WORD_BITS + Long.numberOfTrailingZeros(word), 1);
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    private boolean isEmptyRow(int source){
+        for (int w=0;w<words;++w){
+            if (word(source, w) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static int wordsOf(int size){
+        return (size + WORD_BITS - 1) / WORD_BITS;
+    }
+
+    protected static long bit(int index){
+        return 1L << (index % WORD_BITS);
+    }
+
+    protected void checkValidityOfIndex(int ... indexes){
+        for (int idx: indexes){
+            if (idx < 0 || idx >= size)
+                throw new InvalidParameterException("Index out of bounds!");
+        }
+    }
+
+    /**
+     * Represents the work of one pivot step over a block of rows.
+     * Blocks larger than the threshold are split in halves. Tasks are never
+     * serialized, the graph is given explicitly instead of being enclosed.
+     */
+    private static class PivotTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient BitsetGraph graph;
+        private final int pivot;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        private PivotTask(BitsetGraph graph, int pivot, int from, int to, int threshold){
+            this.graph = graph;
+            this.pivot = pivot;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute(){
+            if (to - from <= threshold){
+                graph.mergePivot(pivot, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PivotTask(graph, pivot, from, middle, threshold),
+                      new PivotTask(graph, pivot, middle, to, threshold));
+        }
+    }
+}
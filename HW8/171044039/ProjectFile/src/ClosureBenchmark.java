@@ -0,0 +1,79 @@
+import java.util.Random;
+
+/**
+ * Measures the speedup of the parallel transitive closure of the Graph
+ * from 1 up to N workers on a random graph. Each run also checks that
+ * the closure is identical to the single worker closure.
+ * Usage: ClosureBenchmark [people] [relationsPerPerson] [maxWorkers]
+ * @see Graph#transitiveClosure(int)
+ * @author Ahmed Semih Özmekik
+ */
+public class ClosureBenchmark
+{
+    private static final int REPEAT = 3; // best of REPEAT runs is reported.
+
+    public static void main(String[] args) {
+        int people = (args.length > 0) ? Integer.parseInt(args[0]) : 4000;
+        int relationsPerPerson = (args.length > 1) ? Integer.parseInt(args[1]) : 2;
+        int maxWorkers = (args.length > 2) ? Integer.parseInt(args[2])
+                                           : Runtime.getRuntime().availableProcessors();
+
+        int[][] relations = randomRelations(people, relationsPerPerson, 222);
+        Graph expected = null;
+        double baseTime = 0;
+
+        System.out.println("workers\ttime(ms)\tspeedup");
+        for (int workers=1;workers<=maxWorkers;++workers){
+            long best = Long.MAX_VALUE;
+            Graph graph = null;
+            for (int r=0;r<REPEAT;++r){
+                graph = buildGraph(people, relations);
+                long start = System.nanoTime();
+                graph.transitiveClosure(workers);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+
+            double time = best / 1e6;
+            if (expected == null){
+                expected = graph;
+                baseTime = time;
+            }
+            else if (!sameEdges(expected, graph))
+                throw new IllegalStateException("Closure differs with " + workers + " workers!");
+
+            System.out.printf("%d\t%.2f\t%.2f%n", workers, time, baseTime / time);
+        }
+    }
+
+    /* Creates random (fan, person) pairs with a fixed seed. */
+    private static int[][] randomRelations(int people, int relationsPerPerson, long seed){
+        Random random = new Random(seed);
+        int[][] relations = new int[people * relationsPerPerson][2];
+        for (int[] relation : relations){
+            relation[0] = random.nextInt(people);
+            relation[1] = random.nextInt(people);
+        }
+        return relations;
+    }
+
+    private static Graph buildGraph(int people, int[][] relations){
+        Graph graph = new MatrixGraph(people);
+        for (int[] relation : relations){
+            if (relation[0] != relation[1])
+                graph.addEdge(relation[0], relation[1]);
+        }
+        return graph;
+    }
+
+    private static boolean sameEdges(Graph g1, Graph g2){
+        for (int i=0;i<g1.size();++i){
+            if (g1.numberOfEdgesPointingTo(i) != g2.numberOfEdgesPointingTo(i))
+                return false;
+            for (int j=0;j<g1.size();++j){
+                if (g1.hasEdge(i, j) != g2.hasEdge(i, j))
+                    return false;
+            }
+        }
+        return true;
+    }
+}
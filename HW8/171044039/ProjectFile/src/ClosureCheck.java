@@ -0,0 +1,151 @@
+import java.util.Random;
+
+/**
+ * Checks the popularity structures against a brute force reference, on random
+ * relations with a fixed seed. The reference finds the people each person
+ * reaches by a search from that person; a person does not reach itself.
+ * For each random input, checked at a few points while relations arrive:
+ *   incremental : PopularityRelation applying transitivity on each insertion,
+ *                 every edge and incoming edge count of its graph.
+ *   reset       : the same on one reused graph, reset for each input.
+ *   deferred    : PopularityRelation with the parallel closure of 1 and 3
+ *                 workers, every edge of the closure.
+ *   closure     : Graph.transitiveClosure alone, with 1 and 3 workers.
+ *   stream      : PopularityStream, the number of famous people.
+ *   index       : ReachabilityIndex, every (fan, person) pair.
+ * Sizes around the 64 bit words of the bitset rows are included. Each group
+ * prints its name, the first failure throws IllegalStateException.
+ * Usage: ClosureCheck [inputs]
+ * @see PopularityRelation
+ * @author Ahmed Semih Özmekik
+ */
+public class ClosureCheck
+{
+    private static final int[] SIZES = {1, 2, 3, 5, 17, 63, 64, 65, 130};
+    private static final int CHECKPOINTS = 4; // checks while relations arrive, the last one at the end.
+
+    public static void main(String[] args) {
+        int inputs = (args.length > 0) ? Integer.parseInt(args[0]) : 40;
+        Random random = new Random(222);
+        PopularityRelation reused = new PopularityRelation(new MatrixGraph(SIZES[SIZES.length-1]), 0);
+
+        for (int input=0;input<inputs;++input){
+            int people = SIZES[input % SIZES.length];
+            double density = (input / SIZES.length) % 3 == 0 ? 0.5 : 2.5; // relations per person.
+            int[][] relations = randomRelations(people, (int) (people * density) + 1, random);
+
+            MatrixGraph incrementalGraph = new MatrixGraph(people);
+            PopularityRelation incremental = new PopularityRelation(incrementalGraph, 0);
+            MatrixGraph deferredGraph = new MatrixGraph(people);
+            PopularityRelation deferred = new PopularityRelation(deferredGraph, 1 + 2 * (input % 2));
+            PopularityStream stream = new PopularityStream(people);
+            reused.reset(people);
+
+            boolean[][] direct = new boolean[people][people];
+            int checked = 0;
+            for (int r=0;r<relations.length;++r){
+                int fan = relations[r][0], person = relations[r][1];
+                direct[fan][person] = true;
+                incremental.addRelation(fan, person);
+                deferred.addRelation(fan, person);
+                stream.addRelation(fan, person);
+                reused.addRelation(fan, person);
+
+                if ((r + 1) * CHECKPOINTS / relations.length == checked)
+                    continue;
+                ++checked;
+                boolean[][] expected = closure(direct);
+                int famous = famousPeople(expected);
+                String at = people + " people, " + (r + 1) + " relations";
+
+                checkGraph(incrementalGraph, expected, "incremental, " + at);
+                check(incremental.numberOfFamousPeople() == famous, "incremental famous people, " + at);
+                check(reused.numberOfFamousPeople() == famous, "reset famous people, " + at);
+                checkIndex(deferred.reachabilityIndex(), expected, "index, " + at);
+                check(deferred.numberOfFamousPeople() == famous, "deferred famous people, " + at);
+                checkGraph(deferredGraph, expected, "deferred, " + at);
+                check(stream.numberOfFamousPeople() == famous, "stream famous people, " + at);
+            }
+            for (int workers=1;workers<=3;workers+=2){
+                MatrixGraph graph = new MatrixGraph(people);
+                for (int[] relation : relations)
+                    graph.addEdge(relation[0], relation[1]);
+                graph.transitiveClosure(workers);
+                checkGraph(graph, closure(direct), "closure with " + workers + " workers, " + people + " people");
+            }
+        }
+        System.out.println("incremental, reset, deferred, closure, stream, index: OK for " + inputs + " inputs");
+    }
+
+    /* Random (fan, person) pairs, self relations and repeated relations included. */
+    private static int[][] randomRelations(int people, int number, Random random){
+        int[][] relations = new int[number][2];
+        for (int[] relation : relations){
+            relation[0] = random.nextInt(people);
+            relation[1] = random.nextInt(people);
+        }
+        return relations;
+    }
+
+    /* Brute force: a depth first search from each person over the direct relations. */
+    private static boolean[][] closure(boolean[][] direct){
+        int n = direct.length;
+        boolean[][] reach = new boolean[n][n];
+        int[] stack = new int[n * n + 1];
+        for (int s=0;s<n;++s){
+            int top = 0;
+            stack[top++] = s;
+            while (top > 0){
+                int v = stack[--top];
+                for (int d=0;d<n;++d){
+                    if (direct[v][d] && !reach[s][d]){
+                        reach[s][d] = true;
+                        stack[top++] = d;
+                    }
+                }
+            }
+            reach[s][s] = false; // the relation is not defined on the same person.
+        }
+        return reach;
+    }
+
+    private static int famousPeople(boolean[][] reach){
+        int famous = 0;
+        for (int person=0;person<reach.length;++person){
+            int fans = 0;
+            for (int fan=0;fan<reach.length;++fan){
+                if (reach[fan][person])
+                    ++fans;
+            }
+            if (fans == reach.length - 1)
+                ++famous;
+        }
+        return famous;
+    }
+
+    private static void checkGraph(Graph graph, boolean[][] expected, String where){
+        for (int person=0;person<expected.length;++person){
+            int fans = 0;
+            for (int fan=0;fan<expected.length;++fan){
+                check(graph.hasEdge(fan, person) == expected[fan][person],
+                        "edge " + fan + "->" + person + " differs, " + where);
+                if (expected[fan][person])
+                    ++fans;
+            }
+            check(graph.numberOfEdgesPointingTo(person) == fans, "fans of " + person + " differ, " + where);
+        }
+    }
+
+    private static void checkIndex(ReachabilityIndex index, boolean[][] expected, String where){
+        for (int fan=0;fan<expected.length;++fan){
+            for (int person=0;person<expected.length;++person)
+                check(index.canReach(fan, person) == expected[fan][person],
+                        "reach " + fan + "->" + person + " differs, " + where);
+        }
+    }
+
+    private static void check(boolean condition, String message){
+        if (!condition)
+            throw new IllegalStateException(message + "!");
+    }
+}
@@ -1,13 +1,62 @@
-import java.io.FileNotFoundException;
+import java.io.File;
+import java.io.IOException;
 
 public class Driver
 {
     public static void main(String[] args) {
         try {
-            PopularityProgram pp = new PopularityProgram("input.txt");
-            pp.input();
-            pp.output();
-        } catch (FileNotFoundException e) {
+            if (args.length > 0 && args[0].equals("--stream")) {
+                /* --stream K [file]: prints the result after every K relations. */
+                int reportInterval = (args.length > 1) ? Integer.parseInt(args[1]) : 0;
+                String file = (args.length > 2) ? args[2] : "input.txt";
+                PopularityStreamProgram sp = new PopularityStreamProgram(file, reportInterval);
+                sp.input();
+                sp.output();
+                return;
+            }
+
+            if (args.length > 1 && args[0].equals("--query")) {
+                /* --query FILE: answers the queries without computing the closure. */
+                PopularityProgram pp = new PopularityProgram("input.txt", 1);
+                pp.input();
+                pp.query(args[1]);
+                return;
+            }
+
+            if (args.length > 1 && args[0].equals("--snapshot")) {
+                /* --snapshot FILE: maps FILE if it exists, otherwise writes it from the input. */
+                boolean mapped = new File(args[1]).exists();
+                try (PopularityProgram pp = mapped ? PopularityProgram.fromSnapshot(args[1])
+                                                   : new PopularityProgram("input.txt", 1)) {
+                    if (!mapped){
+                        pp.input();
+                        pp.writeSnapshot(args[1]);
+                    }
+                    pp.output();
+                }
+                return;
+            }
+
+            if (args.length > 1 && args[0].equals("--stats")) {
+                /* --stats FILE [workers]: writes the counters of the run to FILE as JSON. */
+                int closureParallelism = (args.length > 2) ? Integer.parseInt(args[2]) : 0;
+                try (PopularityProgram pp = new PopularityProgram("input.txt", closureParallelism)) {
+                    pp.input();
+                    pp.output();
+                    pp.statistics().dump(args[1]);
+                }
+                return;
+            }
+
+            /* optional arguments: number of workers for the parallel closure, --off-heap. */
+            int closureParallelism = (args.length > 0) ? Integer.parseInt(args[0]) : 0;
+            boolean offHeap = args.length > 1 && args[1].equals("--off-heap");
+            try (PopularityProgram pp = new PopularityProgram("input.txt", closureParallelism,
+                    offHeap ? BitsetGraph::offHeap : MatrixGraph::new)) {
+                pp.input();
+                pp.output();
+            }
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
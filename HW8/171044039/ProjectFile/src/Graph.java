@@ -1,51 +1,60 @@
-import java.security.InvalidParameterException;
-
 /**
- * Represents the simple Graph implementation with Adjacency Matrix.
+ * Represents the Graph ADT used by the popularity structures. Vertices are
+ * the indexes from 0 to size-1 and edges are directed.
+ * Implementations may be read only, such as the ones loaded from a
+ * snapshot, and throw UnsupportedOperationException on modification.
  * @author Ahmed Semih Özmekik
+ * @see MatrixGraph
+ * @see MappedGraph
  */
-public class Graph {
-
-    private boolean[][] adjacencyMatrix;
-    private int[] numberOfEdgesPointingTo;
-    private int size;
-
-    public Graph(int size){
-        this.size = size;
-        adjacencyMatrix = new boolean[size][size];
-        numberOfEdgesPointingTo = new int[size];
-    }
-
-    public void addEdge(int source, int dest){
-        checkValidityOfIndex(source, dest);
-
-        if (!hasEdge(source, dest)){
-            adjacencyMatrix[source][dest] = true;
-            numberOfEdgesPointingTo[dest]++;
+public interface Graph {
+
+    void addEdge(int source, int dest);
+
+    void removeEdge(int source, int dest);
+
+    boolean hasEdge(int source, int dest);
+
+    int numberOfEdgesPointingTo(int source);
+
+    int size();
+
+    /**
+     * Finds the first destination of the source, starting from the given index.
+     * Iterates the edges of a vertex as: for (d = nextEdge(s, 0); d != -1; d = nextEdge(s, d+1))
+     * @param source is the vertex whose edges are searched.
+     * @param from is the first destination index to check.
+     * @return the destination index, -1 if there is no edge left.
+     */
+    int nextEdge(int source, int from);
+
+    /**
+     * Adds an edge from the source to the other vertex and to every destination
+     * of the other vertex, except the source itself.
+     * @param source is the vertex whose edges are extended.
+     * @param other is the vertex whose edges are copied.
+     * @return the number of edges added.
+     */
+    default int addEdgesOf(int source, int other){
+        int added = 0;
+        if (source != other && !hasEdge(source, other)){
+            addEdge(source, other);
+            ++added;
         }
-    }
-
-    public void removeEdge(int source, int dest){
-        checkValidityOfIndex(source, dest);
-
-        if (hasEdge(source, dest)){
-            adjacencyMatrix[source][dest] = false;
-            numberOfEdgesPointingTo[dest]--;
+        for (int d=nextEdge(other, 0);d!=-1;d=nextEdge(other, d+1)){
+            if (d != source && !hasEdge(source, d)){
+                addEdge(source, d);
+                ++added;
+            }
         }
+        return added;
     }
 
-    public boolean hasEdge(int source, int dest){
-        return adjacencyMatrix[source][dest];
-    }
-
-    public int numberOfEdgesPointingTo(int source){
-        return numberOfEdgesPointingTo[source];
-    }
-
-    private void checkValidityOfIndex(int ... indexes){
-        for (int idx: indexes){
-            if (idx > size)
-                throw new InvalidParameterException("Index out of bounds!");
-        }
-    }
+    /**
+     * Replaces the edges of the graph with its transitive closure. The result
+     * does not depend on the number of workers. Edges from a vertex to itself
+     * are not kept, as in addEdge.
+     * @param parallelism number of workers, 1 runs on the calling thread.
+     */
+    void transitiveClosure(int parallelism);
 }
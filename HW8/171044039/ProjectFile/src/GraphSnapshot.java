@@ -0,0 +1,177 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Represents the binary snapshot format of a Graph, which is written once
+ * and memory mapped on later runs instead of parsing the relations again.
+ * All numbers are big endian, sections start at 8 byte boundaries:
+ *   header  : magic, version, flags, size, edge number (long), words per closure row
+ *   offsets : long[size+1], edges of vertex v are targets[offsets[v]..offsets[v+1])
+ *   targets : int[edge number], sorted for each vertex
+ *   degrees : int[size], number of edges pointing to each vertex
+ *   closure : (if flagged) int[size] degrees of the closure, then
+ *             long[size*words] bitset rows of the transitive closure
+ * @author Ahmed Semih Özmekik
+ * @see MappedGraph
+ */
+public class GraphSnapshot
+{
+    static final int MAGIC = 0x48573847; // "HW8G"
+    static final int VERSION = 1;
+    static final int FLAG_CLOSURE = 1;
+    static final int HEADER_SIZE = 64;
+
+    private GraphSnapshot() {/* intentionally left blank */}
+
+    /**
+     * Writes the edges of the graph without the closure.
+     * @param file is the path of the snapshot.
+     * @param graph is the graph to be written.
+     * @throws IOException
+     */
+    public static void write(String file, Graph graph) throws IOException {
+        write(file, graph, false, 0);
+    }
+
+    /**
+     * Writes the edges of the graph, then replaces the graph with its transitive
+     * closure and writes the closure too. Graph is left closed.
+     * @param file is the path of the snapshot.
+     * @param graph is the graph to be written.
+     * @param closureParallelism number of workers for the closure, 0 if the
+     *                           edges of the graph are already transitive.
+     * @throws IOException
+     */
+    public static void writeWithClosure(String file, Graph graph, int closureParallelism) throws IOException {
+        write(file, graph, true, closureParallelism);
+    }
+
+    /**
+     * Memory maps a snapshot. Edges are read from the file on demand, nothing
+     * is copied to the heap. The header is checked against the length of the
+     * file and the bounds of the offsets, so a truncated or corrupted file is
+     * rejected here; targets and rows are not checked one by one.
+     * @param file is the path of the snapshot.
+     * @return the read only graph of the snapshot.
+     * @throws IOException if the file is not a valid snapshot.
+     */
+    public static MappedGraph load(String file) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("Not a graph snapshot, shorter than its header: " + file);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException("Not a graph snapshot: " + file);
+            int flags = header.getInt();
+            int size = header.getInt();
+            long edgeNumber = header.getLong();
+            int words = header.getInt();
+            if ((flags & ~FLAG_CLOSURE) != 0 || size < 0 || words != (size + 63) >>> 6
+                    || edgeNumber < 0 || edgeNumber > (long) size * size)
+                throw new IOException("Not a graph snapshot, invalid header: " + file);
+            boolean hasClosure = (flags & FLAG_CLOSURE) != 0;
+            if (channel.size() != lengthOf(size, edgeNumber, words, hasClosure))
+                throw new IOException("Not a graph snapshot, length does not match its header: " + file);
+            if (readLong(channel, HEADER_SIZE) != 0 || readLong(channel, HEADER_SIZE + size * 8L) != edgeNumber)
+                throw new IOException("Not a graph snapshot, invalid offsets: " + file);
+            return new MappedGraph(channel, size, edgeNumber, words, hasClosure);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /* Length of the snapshot with given header, sections as MappedGraph maps them. */
+    private static long lengthOf(int size, long edgeNumber, int words, boolean closure){
+        long length = HEADER_SIZE + (size + 1L) * 8 + (((edgeNumber + size) * 4 + 7) & ~7L);
+        if (closure)
+            length += ((size * 4L + 7) & ~7L) + (long) size * words * 8;
+        return length;
+    }
+
+    private static long readLong(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        while (buffer.hasRemaining()){
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException();
+        }
+        return buffer.getLong(0);
+    }
+
+    private static void write(String file, Graph graph, boolean closure, int closureParallelism)
+            throws IOException {
+        int size = graph.size();
+        int words = (size + 63) / 64;
+
+        long edgeNumber = 0;
+        for (int v=0;v<size;++v)
+            edgeNumber += degree(graph, v);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(closure ? FLAG_CLOSURE : 0);
+            out.writeInt(size);
+            out.writeLong(edgeNumber);
+            out.writeInt(words);
+            out.write(new byte[HEADER_SIZE - 28]);
+
+            long offset = 0;
+            out.writeLong(offset);
+            for (int v=0;v<size;++v){
+                offset += degree(graph, v);
+                out.writeLong(offset);
+            }
+            for (int v=0;v<size;++v){
+                for (int d=graph.nextEdge(v, 0);d!=-1;d=graph.nextEdge(v, d+1))
+                    out.writeInt(d);
+            }
+            writeDegrees(out, graph);
+            pad(out, edgeNumber + size);
+
+            if (!closure)
+                return;
+
+            if (closureParallelism > 0)
+                graph.transitiveClosure(closureParallelism);
+            writeDegrees(out, graph);
+            pad(out, size);
+            long[] row = new long[words];
+            for (int v=0;v<size;++v){
+                for (int w=0;w<words;++w)
+                    row[w] = 0;
+                for (int d=graph.nextEdge(v, 0);d!=-1;d=graph.nextEdge(v, d+1))
+                    row[d >>> 6] |= 1L << d;
+                for (long word : row)
+                    out.writeLong(word);
+            }
+        }
+    }
+
+    private static int degree(Graph graph, int source){
+        int degree = 0;
+        for (int d=graph.nextEdge(source, 0);d!=-1;d=graph.nextEdge(source, d+1))
+            ++degree;
+        return degree;
+    }
+
+    private static void writeDegrees(DataOutputStream out, Graph graph) throws IOException {
+        for (int v=0;v<graph.size();++v)
+            out.writeInt(graph.numberOfEdgesPointingTo(v));
+    }
+
+    /* Pads a section of the given number of ints to the 8 byte boundary. */
+    private static void pad(DataOutputStream out, long ints) throws IOException {
+        if (ints % 2 != 0)
+            out.writeInt(0);
+    }
+}
@@ -0,0 +1,251 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Represents the counters and timings of a popularity relation: relations
+ * inserted, edges added by the input and by transitivity, relations already
+ * reachable, closure time, and at dump time the in-degree histogram and the
+ * memory of the graph.
+ * A relation is already reachable if its edge is in the graph when it is
+ * inserted: given before, or implied by transitivity. The graph keeps the
+ * closure, so the two can not be told apart; in the deferred mode, only the
+ * relations given before and the ones implied by an earlier closure count.
+ * Closures are recorded as JFR events (hw8.Closure), and the counters can be
+ * published as a JFR event (hw8.GraphStatistics) or dumped as JSON.
+ * Counters are not synchronized, same as the relation they belong to.
+ * @author Ahmed Semih Özmekik
+ * @see PopularityRelation#statistics()
+ */
+public class GraphStatistics
+{
+    private final Graph graph;
+
+    private long relationsInserted = 0;
+    private long selfRelations = 0; // ignored, a person is not a fan of itself.
+    private long edgesAdded = 0; // new edges given by the input.
+    private long derivedEdges = 0; // new edges implied by transitivity.
+    private long alreadyReachable = 0; // relations whose edge is in the graph when inserted.
+    private long initialEdges; // edges of the graph when it is given.
+    private long closures = 0;
+    private long closureNanos = 0;
+    private long closureStart;
+
+    GraphStatistics(Graph graph){
+        this.graph = graph;
+        initialEdges = edgeNumber();
+    }
+
+    /* Clears the counters for the graph which is reset to be empty. */
+    void reset(){
+        relationsInserted = 0;
+        selfRelations = 0;
+        edgesAdded = 0;
+        derivedEdges = 0;
+        alreadyReachable = 0;
+        initialEdges = 0;
+        closures = 0;
+        closureNanos = 0;
+    }
+
+    void recordSelfRelation(){
+        ++relationsInserted;
+        ++selfRelations;
+    }
+
+    void recordAlreadyReachable(){
+        ++relationsInserted;
+        ++alreadyReachable;
+    }
+
+    void recordInsertion(long derived){
+        ++relationsInserted;
+        ++edgesAdded;
+        derivedEdges += derived;
+    }
+
+    /**
+     * Starts a closure event, to be finished by closureFinished.
+     * @param parallelism number of workers of the closure.
+     * @return the started event.
+     */
+    ClosureEvent closureStarted(int parallelism){
+        ClosureEvent event = new ClosureEvent();
+        event.people = graph.size();
+        event.parallelism = parallelism;
+        event.edgesBefore = initialEdges + edgesAdded + derivedEdges; // every edge is counted once.
+        event.begin();
+        closureStart = System.nanoTime();
+        return event;
+    }
+
+    void closureFinished(ClosureEvent event){
+        long nanos = System.nanoTime() - closureStart;
+        event.end();
+        event.derivedEdges = edgeNumber() - event.edgesBefore;
+        event.commit();
+
+        ++closures;
+        closureNanos += nanos;
+        derivedEdges += event.derivedEdges;
+    }
+
+    public long relationsInserted(){
+        return relationsInserted;
+    }
+
+    public long edgesAdded(){
+        return edgesAdded;
+    }
+
+    public long derivedEdges(){
+        return derivedEdges;
+    }
+
+    public long alreadyReachable(){
+        return alreadyReachable;
+    }
+
+    public long closureNanos(){
+        return closureNanos;
+    }
+
+    /**
+     * Returns the number of people for each in-degree range. Bucket 0 is
+     * in-degree 0, bucket b is in-degrees from 2^(b-1) to 2^b - 1.
+     * @return the histogram.
+     */
+    public long[] inDegreeHistogram(){
+        long[] histogram = new long[33];
+        int used = 1;
+        for (int v=0;v<graph.size();++v){
+            int degree = graph.numberOfEdgesPointingTo(v);
+            int bucket = 32 - Integer.numberOfLeadingZeros(degree);
+            ++histogram[bucket];
+            used = Math.max(used, bucket + 1);
+        }
+        long[] trimmed = new long[used];
+        System.arraycopy(histogram, 0, trimmed, 0, used);
+        return trimmed;
+    }
+
+    /**
+     * Returns the memory used by the graph.
+     * @return footprint in bytes, -1 if the backend does not report it.
+     */
+    public long footprint(){
+        return (graph instanceof BitsetGraph) ? ((BitsetGraph) graph).footprint() : -1;
+    }
+
+    /**
+     * Publishes the current counters as a JFR event.
+     */
+    public void commitEvent(){
+        StatisticsEvent event = new StatisticsEvent();
+        if (!event.isEnabled())
+            return;
+        event.backend = graph.getClass().getSimpleName();
+        event.people = graph.size();
+        event.relationsInserted = relationsInserted;
+        event.edgesAdded = edgesAdded;
+        event.derivedEdges = derivedEdges;
+        event.alreadyReachable = alreadyReachable;
+        event.closureTime = closureNanos;
+        event.footprint = footprint();
+        event.commit();
+    }
+
+    /**
+     * Returns the statistics as a JSON object.
+     * @return the JSON string.
+     */
+    public String toJson(){
+        StringBuilder json = new StringBuilder();
+        json.append("{\"backend\":\"").append(graph.getClass().getSimpleName()).append('"')
+            .append(",\"people\":").append(graph.size())
+            .append(",\"relationsInserted\":").append(relationsInserted)
+            .append(",\"selfRelations\":").append(selfRelations)
+            .append(",\"edgesAdded\":").append(edgesAdded)
+            .append(",\"derivedEdges\":").append(derivedEdges)
+            .append(",\"alreadyReachable\":").append(alreadyReachable)
+            .append(",\"closures\":").append(closures)
+            .append(",\"closureMillis\":").append(closureNanos / 1e6)
+            .append(",\"footprintBytes\":").append(footprint())
+            .append(",\"inDegreeHistogram\":[");
+        long[] histogram = inDegreeHistogram();
+        for (int b=0;b<histogram.length;++b){
+            if (b > 0)
+                json.append(',');
+            json.append(histogram[b]);
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Writes the statistics as JSON to a file and publishes them as a JFR event.
+     * @param file is the output.
+     * @throws IOException
+     */
+    public void dump(String file) throws IOException {
+        commitEvent();
+        try (Writer out = new FileWriter(file)) {
+            out.write(toJson());
+            out.write(System.lineSeparator());
+        }
+    }
+
+    private long edgeNumber(){
+        long edges = 0;
+        for (int v=0;v<graph.size();++v)
+            edges += graph.numberOfEdgesPointingTo(v);
+        return edges;
+    }
+
+    @Name("hw8.Closure")
+    @Label("Transitive Closure")
+    @Category("Popularity")
+    @Description("Transitive closure of the relations in the deferred mode")
+    static class ClosureEvent extends Event {
+        @Label("People")
+        int people;
+        @Label("Parallelism")
+        int parallelism;
+        @Label("Edges Before")
+        long edgesBefore;
+        @Label("Derived Edges")
+        long derivedEdges;
+    }
+
+    @Name("hw8.GraphStatistics")
+    @Label("Graph Statistics")
+    @Category("Popularity")
+    @Description("Counters of a popularity relation")
+    static class StatisticsEvent extends Event {
+        @Label("Backend")
+        String backend;
+        @Label("People")
+        int people;
+        @Label("Relations Inserted")
+        long relationsInserted;
+        @Label("Edges Added")
+        long edgesAdded;
+        @Label("Derived Edges")
+        long derivedEdges;
+        @Label("Already Reachable")
+        @Description("Relations whose edge is in the graph when inserted, given before or implied")
+        long alreadyReachable;
+        @Label("Closure Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long closureTime;
+        @Label("Footprint")
+        @DataAmount
+        long footprint;
+    }
+}
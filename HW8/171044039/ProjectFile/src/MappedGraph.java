@@ -0,0 +1,225 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.InvalidParameterException;
+
+/**
+ * Represents the read only Graph of a memory mapped snapshot. Edges are kept
+ * in CSR form in the file, and read through the mapping on demand.
+ * If the snapshot has the transitive closure, it is available as another
+ * read only Graph over the bitset rows in the file; closing either graph
+ * closes the snapshot.
+ * Mappings are released by the garbage collector after close.
+ * @author Ahmed Semih Özmekik
+ * @see GraphSnapshot
+ */
+public class MappedGraph implements Graph, Closeable {
+
+    private final FileChannel channel;
+    private final int size;
+    private final long edgeNumber;
+    private final MappedRegion offsets;
+    private final MappedRegion targets;
+    private final MappedRegion degrees;
+    private final Closure closure;
+
+    MappedGraph(FileChannel channel, int size, long edgeNumber, int words, boolean hasClosure)
+            throws IOException {
+        this.channel = channel;
+        this.size = size;
+        this.edgeNumber = edgeNumber;
+
+        long position = GraphSnapshot.HEADER_SIZE;
+        offsets = new MappedRegion(channel, position, (size + 1L) * 8);
+        position += (size + 1L) * 8;
+        targets = new MappedRegion(channel, position, edgeNumber * 4);
+        position += edgeNumber * 4;
+        degrees = new MappedRegion(channel, position, size * 4L);
+        position += size * 4L;
+        position = (position + 7) & ~7L;
+
+        if (hasClosure){
+            MappedRegion closureDegrees = new MappedRegion(channel, position, size * 4L);
+            position = (position + size * 4L + 7) & ~7L;
+            MappedRegion rows = new MappedRegion(channel, position, (long) size * words * 8);
+            closure = new Closure(words, rows, closureDegrees);
+        }
+        else
+            closure = null;
+    }
+
+    /**
+     * Returns the transitive closure in the snapshot.
+     * @return the read only closure, null if the snapshot does not have it.
+     */
+    public Graph closure(){
+        return closure;
+    }
+
+    /**
+     * Returns the number of edges in the snapshot, without the closure.
+     * @return the number of edges.
+     */
+    public long edgeNumber(){
+        return edgeNumber;
+    }
+
+    @Override
+    public void addEdge(int source, int dest){
+        throw new UnsupportedOperationException("Snapshot graph is read only!");
+    }
+
+    @Override
+    public void removeEdge(int source, int dest){
+        throw new UnsupportedOperationException("Snapshot graph is read only!");
+    }
+
+    @Override
+    public boolean hasEdge(int source, int dest){
+        int d = nextEdge(source, dest);
+        return d == dest;
+    }
+
+    @Override
+    public int numberOfEdgesPointingTo(int source){
+        return degrees.getInt(source);
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+
+    /* Binary search on the sorted targets of the source. */
+    @Override
+    public int nextEdge(int source, int from){
+        checkValidityOfIndex(source);
+        long low = offsets.getLong(source);
+        long high = offsets.getLong(source + 1);
+        while (low < high){
+            long middle = (low + high) >>> 1;
+            if (targets.getInt(middle) < from)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return (low < offsets.getLong(source + 1)) ? targets.getInt(low) : -1;
+    }
+
+    @Override
+    public void transitiveClosure(int parallelism){
+        throw new UnsupportedOperationException("Snapshot graph is read only!");
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkValidityOfIndex(int ... indexes){
+        for (int idx: indexes){
+            if (idx < 0 || idx >= size)
+                throw new InvalidParameterException("Index out of bounds!");
+        }
+    }
+
+    /**
+     * Represents the transitive closure in the snapshot as bitset rows.
+     * It shares the file of the snapshot, so it can be used alone.
+     */
+    private class Closure implements Graph, Closeable {
+        private final int words;
+        private final MappedRegion rows;
+        private final MappedRegion closureDegrees;
+
+        private Closure(int words, MappedRegion rows, MappedRegion closureDegrees){
+            this.words = words;
+            this.rows = rows;
+            this.closureDegrees = closureDegrees;
+        }
+
+        @Override
+        public void addEdge(int source, int dest){
+            throw new UnsupportedOperationException("Snapshot graph is read only!");
+        }
+
+        @Override
+        public void removeEdge(int source, int dest){
+            throw new UnsupportedOperationException("Snapshot graph is read only!");
+        }
+
+        @Override
+        public boolean hasEdge(int source, int dest){
+            checkValidityOfIndex(source, dest);
+            return (rows.getLong((long) source * words + (dest >>> 6)) & (1L << dest)) != 0;
+        }
+
+        @Override
+        public int numberOfEdgesPointingTo(int source){
+            return closureDegrees.getInt(source);
+        }
+
+        @Override
+        public int size(){
+            return size;
+        }
+
+        @Override
+        public int nextEdge(int source, int from){
+            checkValidityOfIndex(source);
+            if (from >= size)
+                return -1;
+
+            long rowStart = (long) source * words;
+            int w = from >>> 6;
+            long word = rows.getLong(rowStart + w) & (-1L << from);
+            while (word == 0){
+                if (++w == words)
+                    return -1;
+                word = rows.getLong(rowStart + w);
+            }
+            return (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        /* Closure of a closure is itself. */
+        @Override
+        public void transitiveClosure(int parallelism){ }
+
+        @Override
+        public void close() throws IOException {
+            MappedGraph.this.close();
+        }
+    }
+
+    /**
+     * Represents a section of the file mapped in chunks, since a single
+     * mapping can not be larger than 2GB.
+     */
+    private static class MappedRegion {
+        private static final int CHUNK_SHIFT = 30;
+        private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+        private final ByteBuffer[] chunks;
+
+        private MappedRegion(FileChannel channel, long position, long length) throws IOException {
+            int chunkNumber = (int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT);
+            chunks = new ByteBuffer[chunkNumber];
+            for (int i=0;i<chunkNumber;++i){
+                long start = (long) i << CHUNK_SHIFT;
+                long chunkLength = Math.min(CHUNK_MASK + 1, length - start);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + start, chunkLength);
+            }
+        }
+
+        private int getInt(long index){
+            long offset = index << 2;
+            return chunks[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & CHUNK_MASK));
+        }
+
+        private long getLong(long index){
+            long offset = index << 3;
+            return chunks[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+        }
+    }
+}
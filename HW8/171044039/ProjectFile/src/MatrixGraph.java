@@ -0,0 +1,50 @@
+/**
+ * Represents the simple Graph implementation with Adjacency Matrix.
+ * Each row of the matrix is kept as a bitset of 64 bit words on the heap.
+ * @author Ahmed Semih Özmekik
+ */
+public class MatrixGraph extends BitsetGraph {
+
+    private long[][] adjacencyMatrix;
+    private int[] numberOfEdgesPointingTo;
+
+    public MatrixGraph(int size){
+        super(size);
+        adjacencyMatrix = new long[size][words];
+        numberOfEdgesPointingTo = new int[size];
+    }
+
+    @Override
+    public int numberOfEdgesPointingTo(int source){
+        return numberOfEdgesPointingTo[source];
+    }
+
+    @Override
+    protected long word(int source, int w){
+        return adjacencyMatrix[source][w];
+    }
+
+    @Override
+    protected void setWord(int source, int w, long word){
+        adjacencyMatrix[source][w] = word;
+    }
+
+    @Override
+    protected void orRow(int dest, int src){
+        long[] destRow = adjacencyMatrix[dest];
+        long[] srcRow = adjacencyMatrix[src];
+        for (int w=0;w<words;++w)
+            destRow[w] |= srcRow[w];
+    }
+
+    @Override
+    protected void addToDegree(int dest, int delta){
+        numberOfEdgesPointingTo[dest] += delta;
+    }
+
+    @Override
+    protected void clearDegrees(){
+        for (int i=0;i<size;++i)
+            numberOfEdgesPointingTo[i] = 0;
+    }
+}
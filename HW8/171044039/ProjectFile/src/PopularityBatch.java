@@ -0,0 +1,200 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the number of famous people for many relation files in one run, so
+ * that startup and warm-up are paid once. Files are processed concurrently
+ * by a fixed number of workers. Each worker owns one relation structure,
+ * whose graph is sized to the largest input, and one read buffer, which are
+ * reset for every file.
+ * Results are printed in the order of the files, one line per file:
+ *   file: famousNumber   or   file: error message
+ * Usage: PopularityBatch [--workers N] fileOrDirectory ...
+ * Files of a directory are taken in the order of their names.
+ * @author Ahmed Semih Özmekik
+ * @see PopularityRelation
+ */
+public class PopularityBatch
+{
+    private final File[] files;
+    private final int workerNumber;
+    private final PrintStream out;
+
+    private final AtomicInteger nextFile = new AtomicInteger();
+    private final String[] results;
+    private int nextToPrint = 0;
+
+    /**
+     * Creates the batch for the given files.
+     * @param files are the relation files.
+     * @param workerNumber number of files processed at the same time.
+     * @param out is where the results are printed.
+     */
+    public PopularityBatch(File[] files, int workerNumber, PrintStream out){
+        if (workerNumber < 1)
+            throw new IllegalArgumentException("Number of workers must be positive!");
+        this.files = files;
+        this.workerNumber = Math.min(workerNumber, Math.max(1, files.length));
+        this.out = out;
+        results = new String[files.length];
+    }
+
+    public static void main(String[] args) throws Exception {
+        int workerNumber = Runtime.getRuntime().availableProcessors();
+        int first = 0;
+        if (args.length > 1 && args[0].equals("--workers")){
+            workerNumber = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        if (first >= args.length){
+            System.out.println("Usage: PopularityBatch [--workers N] fileOrDirectory ...");
+            return;
+        }
+        new PopularityBatch(collect(Arrays.copyOfRange(args, first, args.length)), workerNumber, System.out).run();
+    }
+
+    /**
+     * Expands the directories in the given paths to their files.
+     * @param paths are files or directories.
+     * @return the files, directory contents sorted by name.
+     */
+    public static File[] collect(String[] paths){
+        File[] files = new File[0];
+        for (String path : paths){
+            File file = new File(path);
+            File[] found = file.isDirectory() ? file.listFiles(File::isFile) : new File[]{file};
+            if (found == null)
+                continue;
+            Arrays.sort(found);
+            files = Arrays.copyOf(files, files.length + found.length);
+            System.arraycopy(found, 0, files, files.length - found.length, found.length);
+        }
+        return files;
+    }
+
+    /**
+     * Processes all files and prints their results.
+     * @return the results in the order of the files.
+     * @throws Exception if a worker fails unexpectedly.
+     */
+    public String[] run() throws Exception {
+        int capacity = largestInput();
+        ExecutorService pool = Executors.newFixedThreadPool(workerNumber);
+        try {
+            Future<?>[] workers = new Future<?>[workerNumber];
+            for (int i=0;i<workerNumber;++i)
+                workers[i] = pool.submit(() -> work(capacity));
+            for (Future<?> worker : workers)
+                worker.get();
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    /* Takes the next file until none left, with the graph and buffer of this worker. */
+    private void work(int capacity){
+        PopularityRelation relations = new PopularityRelation(new MatrixGraph(capacity), 0);
+        RelationReader reader = new RelationReader();
+
+        for (int i=nextFile.getAndIncrement();i<files.length;i=nextFile.getAndIncrement()){
+            String result;
+            try {
+                result = String.valueOf(famousPeopleOf(files[i], relations, reader));
+            } catch (IOException | RuntimeException e) {
+                result = "error " + e.getMessage();
+            }
+            complete(i, files[i].getPath() + ": " + result);
+        }
+    }
+
+    private static int famousPeopleOf(File file, PopularityRelation relations, RelationReader reader)
+            throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            reader.open(input);
+            int peopleNumber = reader.nextInt();
+            int relationNumber = reader.nextInt();
+            relations.reset(peopleNumber);
+            for (int r=0;r<relationNumber;++r){
+                int fanIndex = reader.nextInt();
+                int personIndex = reader.nextInt();
+                relations.addRelation(fanIndex-1, personIndex-1);
+            }
+            return relations.numberOfFamousPeople();
+        }
+    }
+
+    /* Stores the result, prints the results which are now in order. */
+    private synchronized void complete(int index, String result){
+        results[index] = result;
+        while (nextToPrint < results.length && results[nextToPrint] != null)
+            out.println(results[nextToPrint++]);
+    }
+
+    /* Reads the number of people of each file, unreadable files count as empty. */
+    private int largestInput(){
+        RelationReader reader = new RelationReader();
+        int largest = 0;
+        for (File file : files){
+            try (InputStream input = new FileInputStream(file)) {
+                reader.open(input);
+                largest = Math.max(largest, reader.nextInt());
+            } catch (IOException | RuntimeException e) {
+                /* reported when the file is processed. */
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Represents a reader of non negative integers separated by white space,
+     * reusing its buffer for every file.
+     */
+    private static class RelationReader {
+        private final byte[] buffer = new byte[1 << 16];
+        private InputStream input;
+        private int length = 0;
+        private int position = 0;
+
+        private void open(InputStream input){
+            this.input = input;
+            length = 0;
+            position = 0;
+        }
+
+        private int nextInt() throws IOException {
+            int c = read();
+            while (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+                c = read();
+            if (c < '0' || c > '9')
+                throw new IOException(c == -1 ? "Unexpected end of input!" : "Invalid number in input!");
+
+            int value = 0;
+            while (c >= '0' && c <= '9'){
+                value = value * 10 + (c - '0');
+                c = read();
+            }
+            return value;
+        }
+
+        private int read() throws IOException {
+            if (position == length){
+                length = input.read(buffer, 0, buffer.length);
+                position = 0;
+                if (length <= 0){
+                    length = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Scanner;
+
+/**
+ * Measures the phases of the popularity program on relation files for each
+ * Graph backend: parse (reading the input), build (inserting the relations),
+ * closure (deferred transitive closure), famous (numberOfFamousPeople).
+ * Every configuration is run a few times to warm up, then measured; peak
+ * heap usage and the memory of the graph are recorded too.
+ * Results are written as CSV, one line per configuration.
+ * Configurations: matrix and offheap graphs, each with transitivity applied
+ * on insertion and with deferred parallel closure; and the mapped snapshot.
+ * Offheap needs OffHeapGraph on the class path, otherwise its error is
+ * UnsupportedOperationException.
+ * Usage: PopularityBenchmark output.csv input1 [input2 ...]
+ * @author Ahmed Semih Özmekik
+ * @see RelationGenerator
+ */
+public class PopularityBenchmark
+{
+    private static final int WARMUP = 2;
+    private static final int MEASURE = 5;
+    private static final String[] BACKENDS = {"matrix", "offheap", "mapped"};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2){
+            System.out.println("Usage: PopularityBenchmark output.csv input1 [input2 ...]");
+            return;
+        }
+        int workers = Runtime.getRuntime().availableProcessors();
+
+        try (PrintWriter csv = new PrintWriter(new FileWriter(args[0]))) {
+            csv.println("file,people,relations,backend,workers,famous,"
+                    + "parse_ms,build_ms,closure_ms,famous_ms,peak_heap_bytes,graph_bytes,error");
+            for (int i=1;i<args.length;++i){
+                Relations relations = parse(args[i]);
+                for (String backend : BACKENDS){
+                    int[] parallelisms = backend.equals("mapped") ? new int[]{1} : new int[]{0, workers};
+                    for (int parallelism : parallelisms){
+                        String line = run(args[i], relations, backend, parallelism);
+                        System.out.println(line);
+                        csv.println(line);
+                        csv.flush();
+                    }
+                }
+            }
+        }
+    }
+
+    /* Runs one configuration, returns its CSV line. */
+    private static String run(String file, Relations input, String backend, int parallelism)
+            throws IOException {
+        double[] best = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        long peakHeap = 0, graphBytes = 0;
+        int famous = -1;
+        String error = "";
+        String snapshot = null;
+
+        try {
+            if (backend.equals("mapped")){
+                snapshot = File.createTempFile("popularity", ".snapshot").getPath();
+                try (PopularityRelation relation = new PopularityRelation(new MatrixGraph(input.people), 1)) {
+                    insert(relation, input);
+                    relation.writeSnapshot(snapshot);
+                }
+                graphBytes = new File(snapshot).length();
+            }
+
+            for (int iteration=0;iteration<WARMUP+MEASURE;++iteration){
+                resetPeakHeap();
+                long[] times = new long[4];
+
+                long start = System.nanoTime();
+                Relations relations = parse(file);
+                times[0] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                PopularityRelation relation;
+                if (backend.equals("mapped"))
+                    relation = PopularityRelation.fromSnapshot(snapshot);
+                else {
+                    BitsetGraph graph = backend.equals("offheap") ? BitsetGraph.offHeap(relations.people)
+                                                                  : new MatrixGraph(relations.people);
+                    graphBytes = graph.footprint();
+                    relation = new PopularityRelation(graph, parallelism);
+                    insert(relation, relations);
+                }
+                times[1] = System.nanoTime() - start;
+
+                try {
+                    start = System.nanoTime();
+                    relation.applyClosure();
+                    times[2] = System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    famous = relation.numberOfFamousPeople();
+                    times[3] = System.nanoTime() - start;
+                } finally {
+                    relation.close();
+                }
+
+                if (iteration >= WARMUP){
+                    for (int p=0;p<4;++p)
+                        best[p] = Math.min(best[p], times[p] / 1e6);
+                    peakHeap = Math.max(peakHeap, peakHeap());
+                }
+            }
+        } catch (StackOverflowError | OutOfMemoryError | UnsupportedOperationException e) {
+            /* UnsupportedOperationException: OffHeapGraph is not built. */
+            error = e.getClass().getSimpleName();
+        } finally {
+            if (snapshot != null)
+                new File(snapshot).delete();
+        }
+
+        return String.format("%s,%d,%d,%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%d,%d,%s",
+                file, input.people, input.fans.length, backend, parallelism, famous,
+                best[0], best[1], best[2], best[3], peakHeap, graphBytes, error);
+    }
+
+    private static void insert(PopularityRelation relation, Relations relations){
+        for (int i=0;i<relations.fans.length;++i)
+            relation.addRelation(relations.fans[i], relations.persons[i]);
+    }
+
+    private static Relations parse(String file) throws FileNotFoundException {
+        try (Scanner scanner = new Scanner(new File(file))) {
+            Relations relations = new Relations();
+            relations.people = scanner.nextInt();
+            int relationNumber = scanner.nextInt();
+            relations.fans = new int[relationNumber];
+            relations.persons = new int[relationNumber];
+            for (int i=0;i<relationNumber;++i){
+                relations.fans[i] = scanner.nextInt() - 1;
+                relations.persons[i] = scanner.nextInt() - 1;
+            }
+            return relations;
+        }
+    }
+
+    private static void resetPeakHeap(){
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+        }
+    }
+
+    private static long peakHeap(){
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    /** Parsed relations, indexes start from 0. */
+    private static class Relations {
+        private int people;
+        private int[] fans;
+        private int[] persons;
+    }
+}
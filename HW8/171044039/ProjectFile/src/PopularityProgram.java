@@ -1,6 +1,10 @@
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.Scanner;
+import java.util.function.IntFunction;
 
 /**
  * Represents the middle class between the input data and
@@ -11,7 +15,7 @@ import java.util.Scanner;
  * @author Ahmed Semih Özmekik
  * @see PopularityRelation
  */
-public class PopularityProgram
+public class PopularityProgram implements Closeable
 {
     private PopularityRelation relations;
     private Scanner scanner;
@@ -23,12 +27,64 @@ public class PopularityProgram
      * @throws FileNotFoundException
      */
     public PopularityProgram(String filename) throws FileNotFoundException {
+        this(filename, 0);
+    }
+
+    /**
+     * Creates the Popularity Program for a given input, which computes the
+     * transitive closure at once with the given number of workers.
+     * @param filename is the input.
+     * @param closureParallelism number of workers for the closure, 0 for
+     *                           applying transitivity on each relation.
+     * @throws FileNotFoundException
+     */
+    public PopularityProgram(String filename, int closureParallelism) throws FileNotFoundException {
+        this(filename, closureParallelism, MatrixGraph::new);
+    }
+
+    /**
+     * Creates the Popularity Program for a given input, storing the relations
+     * in the graph created by the given factory, e.g. BitsetGraph::offHeap.
+     * @param filename is the input.
+     * @param closureParallelism number of workers for the closure, 0 for
+     *                           applying transitivity on each relation.
+     * @param graphFactory creates an empty graph for the given number of people.
+     * @throws FileNotFoundException
+     */
+    public PopularityProgram(String filename, int closureParallelism, IntFunction<Graph> graphFactory)
+            throws FileNotFoundException {
         scanner = new Scanner(new File(filename));
 
         int peopleNumber = scanner.nextInt();
         relationNumber = scanner.nextInt();
-        relations = new PopularityRelation(peopleNumber);
+        relations = new PopularityRelation(graphFactory.apply(peopleNumber), closureParallelism);
+
+    }
 
+    /* Used for the programs whose relations are not read from an input. */
+    private PopularityProgram(PopularityRelation relations){
+        this.relations = relations;
+    }
+
+    /**
+     * Creates the Popularity Program over a snapshot written by a previous run.
+     * @param snapshotFile is the path of the snapshot.
+     * @return the program with the relations of the snapshot.
+     * @throws IOException
+     * @see #writeSnapshot(String)
+     */
+    public static PopularityProgram fromSnapshot(String snapshotFile) throws IOException {
+        return new PopularityProgram(PopularityRelation.fromSnapshot(snapshotFile));
+    }
+
+    /**
+     * Writes the relations read from the input to a snapshot, so that later runs
+     * do not need to parse the input.
+     * @param snapshotFile is the path of the snapshot.
+     * @throws IOException
+     */
+    public void writeSnapshot(String snapshotFile) throws IOException {
+        relations.writeSnapshot(snapshotFile);
     }
 
     /**
@@ -39,11 +95,39 @@ public class PopularityProgram
         System.out.println(relations.numberOfFamousPeople());
     }
 
+    /**
+     * Returns the counters and timings of the relations.
+     * @return the statistics.
+     */
+    public GraphStatistics statistics(){
+        return relations.statistics();
+    }
+
+    /**
+     * Answers the queries in the given file, whether the fan considers the
+     * person popular, and prints one answer per line.
+     * @param queryFile is the query file.
+     * @throws FileNotFoundException
+     * @see ReachabilityIndex#canReach(String, PrintStream)
+     */
+    public void query(String queryFile) throws FileNotFoundException {
+        relations.reachabilityIndex().canReach(queryFile, System.out);
+    }
+
+    /**
+     * Releases the relations.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        relations.close();
+    }
+
     /**
      * Gets the input from file and constructs the relations.
      */
     public void input(){
-        while(scanner.hasNextInt() && relationNumber>0){
+        while(scanner != null && scanner.hasNextInt() && relationNumber>0){
             int fanIndex = scanner.nextInt();
             int personIndex = scanner.nextInt();
             /* indexes decremented for left shifting in adjacency matrix */
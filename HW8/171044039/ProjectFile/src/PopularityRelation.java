@@ -1,3 +1,7 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.InvalidParameterException;
+
 /**
  * Represents the data structure specialized for a group of people
  * in which an ordered relation with transitivity is defined between person pairs.
@@ -6,18 +10,109 @@
  * Represents the Model Class for solution approach.
  * @author Ahmed Semih Özmekik
  */
-public class PopularityRelation
+public class PopularityRelation implements Closeable
 {
     private Graph peopleGraph;
     private int peopleNumber;
+    private int closureParallelism = 0; // 0 applies transitivity on each insertion.
+    private boolean closureNeeded = false;
+    private int[] worklist; // fans to be updated by an insertion.
+    private GraphStatistics statistics;
 
     /**
      * Creates a Popularity Relation Structure with given initials.
      * @param peopleNumber number of peopleGraph in the data.
      */
     public PopularityRelation(int peopleNumber){
+        this(new MatrixGraph(peopleNumber), 0);
+    }
+
+    /**
+     * Creates a Popularity Relation Structure which does not apply transitivity
+     * on each insertion. Instead, the transitive closure of all relations is
+     * computed at once, in parallel, when the result is asked.
+     * @param peopleNumber number of peopleGraph in the data.
+     * @param closureParallelism number of workers for the closure.
+     * @see Graph#transitiveClosure(int)
+     */
+    public PopularityRelation(int peopleNumber, int closureParallelism){
+        this(new MatrixGraph(peopleNumber), closureParallelism);
+        if (closureParallelism < 1)
+            throw new InvalidParameterException("Parallelism must be positive!");
+    }
+
+    /**
+     * Creates a Popularity Relation Structure over a graph whose edges are
+     * already transitive, such as the closure of a snapshot.
+     * @param closedGraph is the graph of the relations with transitivity applied.
+     * @see GraphSnapshot
+     */
+    public PopularityRelation(Graph closedGraph){
+        this(closedGraph, 0);
+    }
+
+    /**
+     * Creates a Popularity Relation Structure over the given graph, which lets
+     * the caller choose where the relations are stored, e.g. OffHeapGraph.
+     * Edges already in the graph must be transitive, an empty graph is.
+     * @param peopleGraph is the graph of the relations.
+     * @param closureParallelism number of workers for the closure, 0 for
+     *                           applying transitivity on each insertion.
+     */
+    public PopularityRelation(Graph peopleGraph, int closureParallelism){
+        if (closureParallelism < 0)
+            throw new InvalidParameterException("Parallelism can not be negative!");
+        this.peopleNumber = peopleGraph.size();
+        this.peopleGraph = peopleGraph;
+        this.closureParallelism = closureParallelism;
+        statistics = new GraphStatistics(peopleGraph);
+    }
+
+    /**
+     * Creates a Popularity Relation Structure from a snapshot with closure.
+     * The relations are memory mapped and read only, the file is closed by close().
+     * @param snapshotFile is the path of the snapshot.
+     * @return the relations of the snapshot.
+     * @throws IOException if the snapshot can not be read or has no closure.
+     */
+    public static PopularityRelation fromSnapshot(String snapshotFile) throws IOException {
+        MappedGraph snapshot = GraphSnapshot.load(snapshotFile);
+        Graph closure = snapshot.closure(); // closes the snapshot with itself.
+        if (closure == null){
+            snapshot.close();
+            throw new IOException("Snapshot has no closure: " + snapshotFile);
+        }
+        return new PopularityRelation(closure);
+    }
+
+    /**
+     * Writes the relations with their closure to a snapshot. In the deferred
+     * mode, the closure is applied first, so it is recorded in the statistics
+     * as any other closure; the relations are then already transitive, in
+     * both modes.
+     * @param snapshotFile is the path of the snapshot.
+     * @throws IOException
+     */
+    public void writeSnapshot(String snapshotFile) throws IOException {
+        applyClosure();
+        GraphSnapshot.writeWithClosure(snapshotFile, peopleGraph, 0);
+    }
+
+    /**
+     * Removes all relations and resizes the structure for another input. The
+     * graph, the worklist and the statistics are reused, nothing is allocated.
+     * @param peopleNumber number of people of the new input, at most the
+     *                     capacity of the graph.
+     * @throws UnsupportedOperationException if the graph is not a BitsetGraph.
+     * @see BitsetGraph#reset(int)
+     */
+    public void reset(int peopleNumber){
+        if (!(peopleGraph instanceof BitsetGraph))
+            throw new UnsupportedOperationException("Graph can not be reset!");
+        ((BitsetGraph) peopleGraph).reset(peopleNumber);
         this.peopleNumber = peopleNumber;
-        peopleGraph = new Graph(peopleNumber);
+        closureNeeded = false;
+        statistics.reset();
     }
 
     /**
@@ -28,11 +123,22 @@ public class PopularityRelation
      * @param person is the index of P2 who P1 considers as popular.
      */
     public void addRelation(int fan, int person){
-        if (fan == person)
+        if (fan == person){
+            statistics.recordSelfRelation();
+            return;
+        }
+        if (peopleGraph.hasEdge(fan, person)){ // given or implied before.
+            statistics.recordAlreadyReachable();
             return;
+        }
 
-        peopleGraph.addEdge(fan, person);
-        applyTransitivity(fan, person);
+        if (closureParallelism == 0)
+            statistics.recordInsertion(applyTransitivity(fan, person) - 1);
+        else {
+            peopleGraph.addEdge(fan, person);
+            statistics.recordInsertion(0);
+            closureNeeded = true;
+        }
     }
 
     /**
@@ -42,6 +148,8 @@ public class PopularityRelation
      * @return the number of peopleGraph considered popular by every other person.
      */
     public int numberOfFamousPeople(){
+        applyClosure();
+
         int famousNumber = 0;
 
         for (int i=0;i<peopleNumber;++i){
@@ -51,14 +159,70 @@ public class PopularityRelation
         return famousNumber;
     }
 
-    /* Adds new popular persons to the fan's table regarding the transitivity rule */
-    private void applyTransitivity(int fan, int person){
+    /**
+     * In the deferred mode, computes the transitive closure of the relations
+     * inserted since the last closure. Otherwise, does nothing since the
+     * transitivity is already applied.
+     */
+    public void applyClosure(){
+        if (closureNeeded){
+            GraphStatistics.ClosureEvent event = statistics.closureStarted(closureParallelism);
+            peopleGraph.transitiveClosure(closureParallelism);
+            statistics.closureFinished(event);
+            closureNeeded = false;
+        }
+    }
+
+    /**
+     * Returns the counters and timings of the structure.
+     * @return the statistics.
+     */
+    public GraphStatistics statistics(){
+        return statistics;
+    }
+
+    /**
+     * Builds an index over the relations inserted so far, which answers whether
+     * a fan considers a person popular. The index does not see later insertions.
+     * In the deferred mode, closure is not needed for the index and is not computed.
+     * @return the reachability index of the relations.
+     */
+    public ReachabilityIndex reachabilityIndex(){
+        return new ReachabilityIndex(peopleGraph);
+    }
+
+    /**
+     * Releases the graph if it holds resources, such as off-heap memory or a mapped file.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (peopleGraph instanceof Closeable)
+            ((Closeable) peopleGraph).close();
+    }
+
+    /*
+     * Adds the relation with the ones implied by transitivity, keeping the graph
+     * transitive. Everyone who reaches the fan (and the fan) now reaches the
+     * person and everyone the person reaches. Those who already reach the
+     * person are skipped, since they already reach everyone after the person.
+     * Each new edge is added once, without recursion. The relation must be new.
+     * Returns the number of edges added.
+     */
+    private long applyTransitivity(int fan, int person){
+        if (worklist == null || worklist.length < peopleNumber) // kept for smaller inputs after reset.
+            worklist = new int[peopleNumber];
+        int count = 0;
+        worklist[count++] = fan;
         for (int i=0;i<peopleNumber;++i){
-            if (peopleGraph.hasEdge(i, fan) && !peopleGraph.hasEdge(i, person))
-                addRelation(i, person);
-            if (peopleGraph.hasEdge(person, i) && !peopleGraph.hasEdge(fan, i))
-                addRelation(fan, i);
+            if (i != fan && peopleGraph.hasEdge(i, fan) && !peopleGraph.hasEdge(i, person))
+                worklist[count++] = i;
         }
+
+        long added = 0;
+        while (count > 0)
+            added += peopleGraph.addEdgesOf(worklist[--count], person);
+        return added;
     }
 
     private boolean isKnownByAll(int person){
@@ -0,0 +1,323 @@
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+/**
+ * Represents the popularity relation for relations which arrive one by one,
+ * where the number of people considered popular by every other person can
+ * be asked at any time.
+ * Instead of keeping the transitive closure, keeps the strongly connected
+ * components (groups of people who are fans of each other) and a topological
+ * order of them, maintained incrementally as in Pearce-Kelly algorithm.
+ * An insertion only visits the components between the two ends of the new
+ * relation in the order, and collapses them into one component if the
+ * relation closes a cycle.
+ * A person is popular by everyone iff its component is the only component
+ * without relations to other components, so the answer is the size of that
+ * component when there is exactly one such component, otherwise 0.
+ * @author Ahmed Semih Özmekik
+ * @see PopularityRelation
+ */
+public class PopularityStream
+{
+    private static final int INITIAL_EDGES = 2;
+
+    private int peopleNumber;
+    private int relationNumber = 0;
+
+    /* Union-Find of the components. Only representatives have valid data below. */
+    private int[] parent;
+    private int[] componentSize;
+
+    /* Relations of the components, kept as the original person indexes. */
+    private int[][] outEdges;
+    private int[] outCount;
+    private int[][] inEdges;
+    private int[] inCount;
+    private int sinkNumber; // components without relations to other components.
+
+    /* Topological order: order[rep] is the position, atOrder[pos] is the rep or -1. */
+    private int[] order;
+    private int[] atOrder;
+    private int lastPosition; // emptied positions are never used again.
+
+    /* Search buffers, stamps avoid clearing the visited marks on each search. */
+    private int[] forwardMark;
+    private int[] backwardMark;
+    private int stamp = 0;
+    private int[] stack;
+    private int[] forward;
+    private int forwardSize;
+    private int[] backward;
+    private int backwardSize;
+
+    /**
+     * Creates a Popularity Stream with no relations.
+     * @param peopleNumber number of people in the data.
+     */
+    public PopularityStream(int peopleNumber){
+        this.peopleNumber = peopleNumber;
+        parent = new int[peopleNumber];
+        componentSize = new int[peopleNumber];
+        outEdges = new int[peopleNumber][];
+        outCount = new int[peopleNumber];
+        inEdges = new int[peopleNumber][];
+        inCount = new int[peopleNumber];
+        order = new int[peopleNumber];
+        atOrder = new int[peopleNumber];
+        forwardMark = new int[peopleNumber];
+        backwardMark = new int[peopleNumber];
+        stack = new int[peopleNumber];
+        forward = new int[peopleNumber];
+        backward = new int[peopleNumber];
+
+        for (int i=0;i<peopleNumber;++i){
+            parent[i] = i;
+            componentSize[i] = 1;
+            order[i] = i;
+            atOrder[i] = i;
+        }
+        sinkNumber = peopleNumber;
+        lastPosition = peopleNumber - 1;
+    }
+
+    /**
+     * Inserts a relation to the structure.
+     * @param fan is the index of P1 who thinks P2 is popular.
+     * @param person is the index of P2 who P1 considers as popular.
+     */
+    public void addRelation(int fan, int person){
+        checkValidityOfIndex(fan, person);
+        ++relationNumber;
+        if (fan == person)
+            return;
+
+        int fanRep = find(fan);
+        int personRep = find(person);
+        if (fanRep == personRep)
+            return;
+
+        int lowerBound = order[personRep];
+        int upperBound = order[fanRep];
+        if (lowerBound < upperBound){ // order is violated, repair it.
+            ++stamp;
+            boolean cycle = searchForward(personRep, upperBound, fanRep);
+            searchBackward(fanRep, lowerBound);
+            if (cycle){
+                reorder(mergeCycle(fanRep));
+                return; // the new relation is inside the merged component.
+            }
+            reorder(-1);
+        }
+        addEdge(fan, fanRep, person, personRep);
+    }
+
+    /**
+     * Gets the number of people who are considered popular by every other
+     * person, for the relations inserted so far.
+     * @return the number of people considered popular by every other person.
+     */
+    public int numberOfFamousPeople(){
+        if (sinkNumber != 1)
+            return 0;
+        /* The last component in the order has no relations to others. */
+        while (atOrder[lastPosition] == -1)
+            --lastPosition;
+        return componentSize[atOrder[lastPosition]];
+    }
+
+    /**
+     * Returns the number of relations inserted so far.
+     * @return the number of relations.
+     */
+    public int relationNumber(){
+        return relationNumber;
+    }
+
+    private void addEdge(int fan, int fanRep, int person, int personRep){
+        if (outCount[fanRep] == 0)
+            --sinkNumber;
+        outEdges[fanRep] = append(outEdges[fanRep], outCount[fanRep]++, person);
+        inEdges[personRep] = append(inEdges[personRep], inCount[personRep]++, fan);
+    }
+
+    /*
+     * Visits the components reachable from start, which are placed up to the
+     * given position in the order. Returns true if the target is reached.
+     */
+    private boolean searchForward(int start, int upperBound, int target){
+        boolean found = false;
+        int top = 0;
+        forwardSize = 0;
+        stack[top++] = start;
+        forwardMark[start] = stamp;
+        while (top > 0){
+            int rep = stack[--top];
+            forward[forwardSize++] = rep;
+            for (int e=0;e<outCount[rep];++e){
+                int next = find(outEdges[rep][e]);
+                if (next == target)
+                    found = true;
+                if (forwardMark[next] != stamp && order[next] <= upperBound){
+                    forwardMark[next] = stamp;
+                    stack[top++] = next;
+                }
+            }
+        }
+        return found;
+    }
+
+    /* Visits the components reaching start, which are placed from the given position. */
+    private void searchBackward(int start, int lowerBound){
+        int top = 0;
+        backwardSize = 0;
+        stack[top++] = start;
+        backwardMark[start] = stamp;
+        while (top > 0){
+            int rep = stack[--top];
+            backward[backwardSize++] = rep;
+            for (int e=0;e<inCount[rep];++e){
+                int previous = find(inEdges[rep][e]);
+                if (backwardMark[previous] != stamp && order[previous] >= lowerBound){
+                    backwardMark[previous] = stamp;
+                    stack[top++] = previous;
+                }
+            }
+        }
+    }
+
+    /*
+     * Merges the components which are both reachable from the person and reaching
+     * the fan, into the fan's component. Returns the new representative.
+     */
+    private int mergeCycle(int rep){
+        for (int i=0;i<forwardSize;++i){
+            int member = forward[i];
+            if (backwardMark[member] == stamp && member != rep){
+                if (outCount[member] == 0)
+                    --sinkNumber;
+                parent[member] = rep;
+                componentSize[rep] += componentSize[member];
+            }
+        }
+        if (outCount[rep] == 0)
+            --sinkNumber;
+
+        /* Collect the relations of the members, dropping the ones inside the component. */
+        int out = 0, in = 0;
+        int[] mergedOut = null;
+        int[] mergedIn = null;
+        for (int i=0;i<forwardSize;++i){
+            int member = forward[i];
+            if (backwardMark[member] != stamp)
+                continue;
+            for (int e=0;e<outCount[member];++e){
+                int person = outEdges[member][e];
+                if (find(person) != rep)
+                    mergedOut = append(mergedOut, out++, person);
+            }
+            for (int e=0;e<inCount[member];++e){
+                int fan = inEdges[member][e];
+                if (find(fan) != rep)
+                    mergedIn = append(mergedIn, in++, fan);
+            }
+            outEdges[member] = null;
+            outCount[member] = 0;
+            inEdges[member] = null;
+            inCount[member] = 0;
+        }
+        outEdges[rep] = mergedOut;
+        outCount[rep] = out;
+        inEdges[rep] = mergedIn;
+        inCount[rep] = in;
+
+        if (out == 0)
+            ++sinkNumber;
+        return rep;
+    }
+
+    /*
+     * Gives the positions of the visited components back to them, so that the
+     * components reaching the fan come before the ones reachable from the person.
+     * If a cycle was merged, its representative ends the first group and the
+     * positions left by the other members stay empty between the two groups.
+     */
+    private void reorder(int mergedRep){
+        int total = forwardSize + backwardSize;
+        int[] slots = new int[total];
+        int slotCount = 0;
+        long[] before = new long[backwardSize + 1];
+        int beforeCount = 0;
+        long[] after = new long[forwardSize];
+        int afterCount = 0;
+
+        for (int i=0;i<backwardSize;++i){
+            int rep = backward[i];
+            slots[slotCount++] = order[rep];
+            if (mergedRep == -1 || forwardMark[rep] != stamp)
+                before[beforeCount++] = sortKey(rep);
+        }
+        for (int i=0;i<forwardSize;++i){
+            int rep = forward[i];
+            if (backwardMark[rep] == stamp){
+                if (mergedRep == -1)
+                    throw new IllegalStateException("Order search is inconsistent!");
+                continue; // already counted with the backward group.
+            }
+            slots[slotCount++] = order[rep];
+            after[afterCount++] = sortKey(rep);
+        }
+        if (mergedRep != -1)
+            before[beforeCount++] = ((long) Integer.MAX_VALUE << 32) | mergedRep;
+
+        Arrays.sort(slots, 0, slotCount);
+        Arrays.sort(before, 0, beforeCount);
+        Arrays.sort(after, 0, afterCount);
+
+        /* Backward group only moves down and forward group only moves up. */
+        int slot = 0;
+        for (int i=0;i<beforeCount;++i)
+            place((int) before[i], slots[slot++]);
+        for (int holes = slotCount - beforeCount - afterCount; holes > 0; --holes)
+            atOrder[slots[slot++]] = -1;
+        for (int i=0;i<afterCount;++i)
+            place((int) after[i], slots[slot++]);
+    }
+
+    private void place(int rep, int position){
+        order[rep] = position;
+        atOrder[position] = rep;
+    }
+
+    /* Components are sorted by their old positions, keeping their relative order. */
+    private long sortKey(int rep){
+        return ((long) order[rep] << 32) | rep;
+    }
+
+    private int find(int person){
+        int root = person;
+        while (parent[root] != root)
+            root = parent[root];
+        while (parent[person] != root){ // path compression.
+            int next = parent[person];
+            parent[person] = root;
+            person = next;
+        }
+        return root;
+    }
+
+    private static int[] append(int[] edges, int index, int person){
+        if (edges == null)
+            edges = new int[INITIAL_EDGES];
+        else if (index == edges.length)
+            edges = Arrays.copyOf(edges, edges.length * 2);
+        edges[index] = person;
+        return edges;
+    }
+
+    private void checkValidityOfIndex(int ... indexes){
+        for (int idx: indexes){
+            if (idx < 0 || idx >= peopleNumber)
+                throw new InvalidParameterException("Index out of bounds!");
+        }
+    }
+}
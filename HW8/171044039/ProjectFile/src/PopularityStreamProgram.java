@@ -0,0 +1,71 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+/**
+ * Represents the controller for relations which arrive continuously.
+ * Reads the number of people, then reads relations until the input ends,
+ * without waiting for the whole input. The current number of popular
+ * people is printed after every K relations for monitoring, and can be
+ * asked at any time.
+ * @author Ahmed Semih Özmekik
+ * @see PopularityStream
+ */
+public class PopularityStreamProgram
+{
+    private PopularityStream relations;
+    private Scanner scanner;
+    private int reportInterval;
+
+    /**
+     * Creates the Popularity Stream Program for a given input.
+     * @param filename is the input, "-" for the standard input.
+     * @param reportInterval number of relations between two outputs, 0 for none.
+     * @throws FileNotFoundException
+     */
+    public PopularityStreamProgram(String filename, int reportInterval) throws FileNotFoundException {
+        if (filename.equals("-"))
+            scanner = new Scanner(System.in);
+        else
+            scanner = new Scanner(new File(filename));
+        this.reportInterval = reportInterval;
+
+        int peopleNumber = scanner.nextInt();
+        scanner.nextInt(); // number of relations is not known for a stream.
+        relations = new PopularityStream(peopleNumber);
+    }
+
+    /**
+     * Gets the relations until the input ends. Prints the number of popular
+     * people after every K relations.
+     */
+    public void input(){
+        while(scanner.hasNextInt()){
+            int fanIndex = scanner.nextInt();
+            int personIndex = scanner.nextInt();
+            /* indexes decremented for left shifting */
+            relations.addRelation(fanIndex-1, personIndex-1);
+
+            if (reportInterval > 0 && relations.relationNumber() % reportInterval == 0)
+                System.out.println(relations.relationNumber() + " relations: " +
+                        relations.numberOfFamousPeople());
+        }
+    }
+
+    /**
+     * Returns the number of people considered popular by every other person
+     * for the relations read so far.
+     * @return the current number of popular people.
+     */
+    public int currentFamousPeople(){
+        return relations.numberOfFamousPeople();
+    }
+
+    /**
+     * Prints the number of people considered popular by every other person.
+     */
+    public void output(){
+        System.out.println("Number of people considered popular by every other person: ");
+        System.out.println(relations.numberOfFamousPeople());
+    }
+}
@@ -0,0 +1,326 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Scanner;
+
+/**
+ * Represents the index which answers whether a person is considered popular
+ * by a fan, directly or by transitivity, without keeping the transitive closure.
+ * The strongly connected components of the graph are collapsed into a DAG,
+ * and each component is labeled with a few intervals from randomized post-order
+ * traversals of the DAG (GRAIL labeling). If the intervals of the person are
+ * not inside the intervals of the fan, the person is not reachable. Otherwise,
+ * a depth first search which only enters such components decides.
+ * Memory is linear in the number of people and DAG edges.
+ * @author Ahmed Semih Özmekik
+ * @see Graph
+ */
+public class ReachabilityIndex
+{
+    private static final int DEFAULT_LABELS = 3;
+
+    private int size;
+    private int[] component; // component of each person.
+    private int componentNumber;
+
+    /*
+     * DAG of the components in CSR form. Components are numbered in the order
+     * they are completed, so a component only reaches smaller numbered ones.
+     */
+    private int[] dagStart;
+    private int[] dagEdges;
+
+    /* Interval labels, [low, rank] of label l for component c is at c*labels + l. */
+    private int labels;
+    private int[] low;
+    private int[] rank;
+
+    /* Query buffers. */
+    private int[] visited;
+    private int stamp = 0;
+    private int[] stack;
+
+    /**
+     * Builds the index for the given graph with default number of labels.
+     * @param graph is the graph of the relations.
+     */
+    public ReachabilityIndex(Graph graph){
+        this(graph, DEFAULT_LABELS, 222);
+    }
+
+    /**
+     * Builds the index for the given graph.
+     * @param graph is the graph of the relations.
+     * @param labels number of interval labels per component, more labels prune more queries.
+     * @param seed is the seed of the randomized traversals.
+     */
+    public ReachabilityIndex(Graph graph, int labels, long seed){
+        if (labels < 1)
+            throw new InvalidParameterException("At least one label is needed!");
+        this.size = graph.size();
+        this.labels = labels;
+
+        findComponents(graph);
+        buildDag(graph);
+        buildLabels(new Random(seed));
+
+        visited = new int[componentNumber];
+        stack = new int[componentNumber];
+    }
+
+    /**
+     * Checks whether the fan considers the person popular, directly or by transitivity.
+     * @param fan is the index of the fan.
+     * @param person is the index of the person.
+     * @return true if the person is reachable from the fan.
+     */
+    public boolean canReach(int fan, int person){
+        checkValidityOfIndex(fan, person);
+        if (fan == person) // the relation is not defined on the same person.
+            return false;
+
+        int source = component[fan];
+        int target = component[person];
+        if (source == target)
+            return true;
+        if (source < target || !contains(source, target))
+            return false;
+
+        /* Labels can not refute, search only the components whose labels contain the target. */
+        ++stamp;
+        int top = 0;
+        stack[top++] = source;
+        visited[source] = stamp;
+        while (top > 0){
+            int current = stack[--top];
+            for (int e=dagStart[current];e<dagStart[current+1];++e){
+                int next = dagEdges[e];
+                if (next == target)
+                    return true;
+                if (visited[next] != stamp && next > target && contains(next, target)){
+                    visited[next] = stamp;
+                    stack[top++] = next;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Answers many queries at once.
+     * @param fans are the indexes of the fans.
+     * @param persons are the indexes of the persons, same length with fans.
+     * @return the answers, i-th answer is canReach(fans[i], persons[i]).
+     */
+    public boolean[] canReach(int[] fans, int[] persons){
+        if (fans.length != persons.length)
+            throw new InvalidParameterException("Query lengths does not match!");
+
+        boolean[] answers = new boolean[fans.length];
+        for (int i=0;i<fans.length;++i)
+            answers[i] = canReach(fans[i], persons[i]);
+        return answers;
+    }
+
+    /**
+     * Answers the queries in a file and prints one answer (1 or 0) per line.
+     * The file has the same format with the relations input: first line is
+     * the number of queries, following lines are "fan person" pairs starting from 1.
+     * @param filename is the query file.
+     * @param out is where the answers printed.
+     * @throws FileNotFoundException
+     */
+    public void canReach(String filename, PrintStream out) throws FileNotFoundException {
+        Scanner scanner = new Scanner(new File(filename));
+        int queryNumber = scanner.nextInt();
+        int[] fans = new int[queryNumber];
+        int[] persons = new int[queryNumber];
+        int read = 0;
+        while (read < queryNumber && scanner.hasNextInt()){
+            fans[read] = scanner.nextInt() - 1;
+            persons[read] = scanner.nextInt() - 1;
+            ++read;
+        }
+        scanner.close();
+
+        boolean[] answers = canReach(Arrays.copyOf(fans, read), Arrays.copyOf(persons, read));
+        StringBuilder builder = new StringBuilder(read * 2);
+        for (boolean answer : answers)
+            builder.append(answer ? '1' : '0').append('\n');
+        out.print(builder);
+    }
+
+    /**
+     * Returns the number of strongly connected components.
+     * @return the number of components.
+     */
+    public int componentNumber(){
+        return componentNumber;
+    }
+
+    /* Iterative Tarjan's algorithm, components are numbered in completion order. */
+    private void findComponents(Graph graph){
+        component = new int[size];
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        int[] cursor = new int[size]; // next destination to check for each vertex on the call stack.
+        int[] callStack = new int[size];
+        int[] sccStack = new int[size];
+        boolean[] onStack = new boolean[size];
+        Arrays.fill(index, -1);
+        int counter = 0, callTop = 0, sccTop = 0;
+
+        for (int root=0;root<size;++root){
+            if (index[root] != -1)
+                continue;
+            callStack[callTop++] = root;
+            index[root] = lowLink[root] = counter++;
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+
+            while (callTop > 0){
+                int v = callStack[callTop - 1];
+                int w = graph.nextEdge(v, cursor[v]);
+                if (w != -1){
+                    cursor[v] = w + 1;
+                    if (index[w] == -1){ // descend.
+                        index[w] = lowLink[w] = counter++;
+                        sccStack[sccTop++] = w;
+                        onStack[w] = true;
+                        callStack[callTop++] = w;
+                    }
+                    else if (onStack[w])
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    continue;
+                }
+
+                --callTop; // all edges of v are done.
+                if (callTop > 0){
+                    int u = callStack[callTop - 1];
+                    lowLink[u] = Math.min(lowLink[u], lowLink[v]);
+                }
+                if (lowLink[v] == index[v]){
+                    int member;
+                    do {
+                        member = sccStack[--sccTop];
+                        onStack[member] = false;
+                        component[member] = componentNumber;
+                    } while (member != v);
+                    ++componentNumber;
+                }
+            }
+        }
+    }
+
+    /* Collects the edges between different components, without duplicates. */
+    private void buildDag(Graph graph){
+        int[] members = new int[size]; // persons sorted by component.
+        int[] memberStart = new int[componentNumber + 1];
+        for (int v=0;v<size;++v)
+            ++memberStart[component[v] + 1];
+        for (int c=0;c<componentNumber;++c)
+            memberStart[c + 1] += memberStart[c];
+        int[] fill = Arrays.copyOf(memberStart, componentNumber);
+        for (int v=0;v<size;++v)
+            members[fill[component[v]]++] = v;
+
+        int[] seen = new int[componentNumber];
+        Arrays.fill(seen, -1);
+        dagStart = new int[componentNumber + 1];
+        dagEdges = new int[Math.max(16, componentNumber)];
+        int edgeNumber = 0;
+        for (int c=0;c<componentNumber;++c){
+            dagStart[c] = edgeNumber;
+            for (int m=memberStart[c];m<memberStart[c+1];++m){
+                int v = members[m];
+                for (int w=graph.nextEdge(v, 0);w!=-1;w=graph.nextEdge(v, w+1)){
+                    int next = component[w];
+                    if (next != c && seen[next] != c){
+                        seen[next] = c;
+                        if (edgeNumber == dagEdges.length)
+                            dagEdges = Arrays.copyOf(dagEdges, edgeNumber * 2);
+                        dagEdges[edgeNumber++] = next;
+                    }
+                }
+            }
+        }
+        dagStart[componentNumber] = edgeNumber;
+        dagEdges = Arrays.copyOf(dagEdges, edgeNumber);
+    }
+
+    /*
+     * For each label, traverses the DAG in post-order, visiting the roots and
+     * the children in a random rotation. rank is the post-order number of the
+     * component, low is the smallest rank reachable from it.
+     */
+    private void buildLabels(Random random){
+        low = new int[componentNumber * labels];
+        rank = new int[componentNumber * labels];
+        int[] cursor = new int[componentNumber];
+        int[] offset = new int[componentNumber];
+        boolean[] done = new boolean[componentNumber];
+        int[] callStack = new int[componentNumber];
+
+        for (int l=0;l<labels;++l){
+            Arrays.fill(done, false);
+            int counter = 1;
+            int rootOffset = random.nextInt(Math.max(1, componentNumber));
+
+            for (int r=0;r<componentNumber;++r){
+                int root = (r + rootOffset) % componentNumber;
+                if (done[root])
+                    continue;
+                int top = 0;
+                callStack[top++] = root;
+                start(root, random, cursor, offset, done);
+
+                while (top > 0){
+                    int c = callStack[top - 1];
+                    int degree = dagStart[c+1] - dagStart[c];
+                    if (cursor[c] < degree){
+                        int next = dagEdges[dagStart[c] + (cursor[c]++ + offset[c]) % degree];
+                        if (!done[next]){
+                            start(next, random, cursor, offset, done);
+                            callStack[top++] = next;
+                        }
+                        continue;
+                    }
+
+                    --top; // all children of c are labeled.
+                    int smallest = counter;
+                    for (int e=dagStart[c];e<dagStart[c+1];++e)
+                        smallest = Math.min(smallest, low[dagEdges[e] * labels + l]);
+                    rank[c * labels + l] = counter++;
+                    low[c * labels + l] = smallest;
+                }
+            }
+        }
+    }
+
+    private void start(int c, Random random, int[] cursor, int[] offset, boolean[] done){
+        int degree = dagStart[c+1] - dagStart[c];
+        done[c] = true;
+        cursor[c] = 0;
+        offset[c] = (degree > 1) ? random.nextInt(degree) : 0;
+    }
+
+    /* Checks whether all the intervals of the target are inside the ones of the source. */
+    private boolean contains(int source, int target){
+        int s = source * labels, t = target * labels;
+        for (int l=0;l<labels;++l){
+            if (low[t+l] < low[s+l] || rank[t+l] > rank[s+l])
+                return false;
+        }
+        return true;
+    }
+
+    private void checkValidityOfIndex(int ... indexes){
+        for (int idx: indexes){
+            if (idx < 0 || idx >= size)
+                throw new InvalidParameterException("Index out of bounds!");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+/**
+ * Generates relation files in the input format for testing and benchmarking.
+ * Supported shapes:
+ *   random    : Erdos-Renyi, M pairs chosen uniformly.
+ *   powerlaw  : fans uniform, persons from a Zipf distribution, a few people are very popular.
+ *   chain     : 1 2, 2 3, ..., N-1 N; the last person is popular, M is ignored.
+ *   star      : N/1000 (at least one) celebrities following each other in a cycle,
+ *               everyone else follows one celebrity, rest of M is random noise.
+ *               Every celebrity is popular by everyone.
+ * Usage: RelationGenerator shape N M seed output
+ * @author Ahmed Semih Özmekik
+ */
+public class RelationGenerator
+{
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    private final Random random;
+    private final int peopleNumber;
+
+    public RelationGenerator(int peopleNumber, long seed){
+        this.peopleNumber = peopleNumber;
+        random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5){
+            System.out.println("Usage: RelationGenerator random|powerlaw|chain|star N M seed output");
+            return;
+        }
+        int peopleNumber = Integer.parseInt(args[1]);
+        int relationNumber = Integer.parseInt(args[2]);
+        RelationGenerator generator = new RelationGenerator(peopleNumber, Long.parseLong(args[3]));
+        generator.write(args[0], relationNumber, args[4]);
+    }
+
+    /**
+     * Generates the relations of the given shape and writes them to a file.
+     * @param shape is one of random, powerlaw, chain, star.
+     * @param relationNumber number of relations, M.
+     * @param file is the output.
+     * @throws IOException
+     */
+    public void write(String shape, int relationNumber, String file) throws IOException {
+        int[][] relations = generate(shape, relationNumber);
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file), 1 << 16))) {
+            out.println(peopleNumber + " " + relations.length);
+            for (int[] relation : relations)
+                out.println((relation[0] + 1) + " " + (relation[1] + 1));
+        }
+    }
+
+    /**
+     * Generates the relations of the given shape, indexes start from 0.
+     * @param shape is one of random, powerlaw, chain, star.
+     * @param relationNumber number of relations, M.
+     * @return (fan, person) pairs.
+     */
+    public int[][] generate(String shape, int relationNumber){
+        switch (shape){
+            case "random":
+                return random(relationNumber);
+            case "powerlaw":
+                return powerLaw(relationNumber);
+            case "chain":
+                return chain();
+            case "star":
+                return star(relationNumber);
+            default:
+                throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+    }
+
+    private int[][] random(int relationNumber){
+        int[][] relations = new int[relationNumber][];
+        for (int i=0;i<relationNumber;++i)
+            relations[i] = new int[]{random.nextInt(peopleNumber), random.nextInt(peopleNumber)};
+        return relations;
+    }
+
+    private int[][] powerLaw(int relationNumber){
+        /* Cumulative weights of rank^-s, persons are drawn by binary search on it. */
+        double[] cumulative = new double[peopleNumber];
+        double total = 0;
+        for (int i=0;i<peopleNumber;++i){
+            total += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = total;
+        }
+
+        int[][] relations = new int[relationNumber][];
+        for (int i=0;i<relationNumber;++i){
+            double u = random.nextDouble() * total;
+            int low = 0, high = peopleNumber - 1;
+            while (low < high){
+                int middle = (low + high) >>> 1;
+                if (cumulative[middle] < u)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            relations[i] = new int[]{random.nextInt(peopleNumber), low};
+        }
+        return relations;
+    }
+
+    private int[][] chain(){
+        int[][] relations = new int[Math.max(0, peopleNumber - 1)][];
+        for (int i=0;i+1<peopleNumber;++i)
+            relations[i] = new int[]{i, i + 1};
+        return relations;
+    }
+
+    private int[][] star(int relationNumber){
+        int celebrities = Math.max(1, peopleNumber / 1000);
+        int[][] relations = new int[Math.max(relationNumber, peopleNumber)][];
+        int count = 0;
+
+        for (int c=0;c<celebrities && celebrities>1;++c)
+            relations[count++] = new int[]{c, (c + 1) % celebrities};
+        for (int fan=celebrities;fan<peopleNumber;++fan)
+            relations[count++] = new int[]{fan, random.nextInt(celebrities)};
+        while (count < relations.length)
+            relations[count++] = new int[]{random.nextInt(peopleNumber), random.nextInt(peopleNumber)};
+        return relations;
+    }
+}